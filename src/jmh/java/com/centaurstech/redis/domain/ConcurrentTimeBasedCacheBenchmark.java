@@ -0,0 +1,76 @@
+package com.centaurstech.redis.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存在多线程下的吞吐，read只读，readWrite为6个线程读、2个线程写
+ * maximumSize小于key数量时同时包含淘汰的开销
+ * TimeBasedCache不是线程安全的，无法在并发下测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConcurrentTimeBasedCacheBenchmark {
+    private static final int KEY_COUNT = 16384;
+
+    @Param({"100000", "4096"})
+    public long maximumSize;
+
+    private ConcurrentTimeBasedCache<Object> cache;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new ConcurrentTimeBasedCache<>(10 * 60 * 1000L, maximumSize);
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "bench:key-" + i;
+            cache.put(keys[i], i);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object read() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(6)
+    public Object readWriteGet() {
+        return cache.get(nextKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public void readWritePut() {
+        String key = nextKey();
+        cache.put(key, key);
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)];
+    }
+}
@@ -0,0 +1,182 @@
+package com.centaurstech.redis.serializer;
+
+import com.centaurstech.redis.configuration.CentaursRedisProperties;
+import com.centaurstech.redis.configuration.RedisConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisConfig中各template的value序列化器，以及按类型读写使用的TypedValueSerializer
+ * 不需要redis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TemplateSerializer {
+        @Param({"redisTemplate", "redisTemplateV2"})
+        public String template;
+
+        @Param({"json", "smile"})
+        public String codec;
+
+        /**
+         * 0为不压缩
+         */
+        @Param({"0", "256"})
+        public int compressionThreshold;
+
+        RedisSerializer<Object> serializer;
+        Object value;
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            CentaursRedisProperties properties = new CentaursRedisProperties();
+            properties.getCodec().setRedisTemplate(codec);
+            properties.getCodec().setRedisTemplateV2(codec);
+            properties.getCompression().setThreshold(compressionThreshold);
+            // 只用到序列化器，不会建立连接
+            LettuceConnectionFactory factory = new LettuceConnectionFactory();
+            RedisConfig config = new RedisConfig();
+            RedisTemplate<String, Object> redisTemplate = "redisTemplateV2".equals(template)
+                    ? config.redisTemplateV2(factory, properties, new TypeIdRegistry())
+                    : config.redisTemplate(factory, properties, new TypeIdRegistry());
+            serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            value = Payload.sample();
+            bytes = serializer.serialize(value);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Typed {
+        TypedValueSerializer serializer;
+        Payload value;
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            serializer = new TypedValueSerializer();
+            value = Payload.sample();
+            bytes = serializer.serialize(value);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(TemplateSerializer state) {
+        return state.serializer.serialize(state.value);
+    }
+
+    @Benchmark
+    public Object deserialize(TemplateSerializer state) {
+        return state.serializer.deserialize(state.bytes);
+    }
+
+    @Benchmark
+    public byte[] serializeTyped(Typed state) {
+        return state.serializer.serialize(state.value);
+    }
+
+    @Benchmark
+    public Payload deserializeTyped(Typed state) {
+        return state.serializer.deserialize(state.bytes, Payload.class);
+    }
+
+    /**
+     * 接近线上缓存对象的结构：几个标量字段、一个列表和一个map，序列化后约1KB
+     */
+    public static class Payload {
+        private String id;
+        private String text;
+        private long createdAt;
+        private double confidence;
+        private List<String> tags;
+        private Map<String, Double> scores;
+
+        public static Payload sample() {
+            Payload payload = new Payload();
+            payload.id = "5d1c2f7e-9a41-4b7c-8e2a-3f6d0b9c1a2e";
+            payload.text = "明天上午十点提醒我给客户打电话，确认一下下周的会议安排和出差行程";
+            payload.createdAt = 1571299200000L;
+            payload.confidence = 0.9731;
+            payload.tags = new ArrayList<>();
+            payload.scores = new LinkedHashMap<>();
+            for (int i = 0; i < 20; i++) {
+                payload.tags.add("tag-" + i);
+                payload.scores.put("intent.reminder.create." + i, 1.0 / (i + 1));
+            }
+            return payload;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public void setCreatedAt(long createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(double confidence) {
+            this.confidence = confidence;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public Map<String, Double> getScores() {
+            return scores;
+        }
+
+        public void setScores(Map<String, Double> scores) {
+            this.scores = scores;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.configuration.CentaursRedisProperties;
+import com.centaurstech.redis.configuration.RedisConfig;
+import com.centaurstech.redis.interfaces.RedisKey;
+import com.centaurstech.redis.serializer.TypeIdRegistry;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * 基准测试用的redis连接，地址通过-Dbench.redis.host、-Dbench.redis.port指定，默认本机6379
+ * 不可用时连接一个没有监听的端口，CacheService创建时即切换到内存
+ */
+final class BenchmarkRedis {
+    private static final int UNAVAILABLE_PORT = 1;
+
+    enum BenchmarkKey implements RedisKey {
+        OBJ;
+
+        @Override
+        public String getKey() {
+            return "bench";
+        }
+    }
+
+    private BenchmarkRedis() {
+    }
+
+    static LettuceConnectionFactory connect(boolean available) {
+        String host = System.getProperty("bench.redis.host", "127.0.0.1");
+        int port = available ? Integer.getInteger("bench.redis.port", 6379) : UNAVAILABLE_PORT;
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(host, port);
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    static RedisService redisService(LettuceConnectionFactory factory) {
+        return new RedisService(new RedisConfig().redisTemplate(factory, new CentaursRedisProperties(), new TypeIdRegistry()));
+    }
+}
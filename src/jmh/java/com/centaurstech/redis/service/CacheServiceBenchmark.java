@@ -0,0 +1,75 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.serializer.SerializerBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheService读写的耗时，redis模式访问本机redis，fallback模式为redis不可用时使用内存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CacheServiceBenchmark {
+    private static final int KEY_COUNT = 1024;
+    private static final long TIMEOUT = 10 * 60 * 1000L;
+
+    @Param({"redis", "fallback"})
+    public String mode;
+
+    private LettuceConnectionFactory factory;
+    private CacheService cacheService;
+    private String[] keys;
+    private Object value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        factory = BenchmarkRedis.connect("redis".equals(mode));
+        cacheService = new CacheService(BenchmarkRedis.redisService(factory));
+        value = SerializerBenchmark.Payload.sample();
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key-" + i;
+            cacheService.setObj(BenchmarkRedis.BenchmarkKey.OBJ, keys[i], value, TIMEOUT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cacheService.delAllKey(BenchmarkRedis.BenchmarkKey.OBJ);
+        cacheService.destroy();
+        factory.destroy();
+    }
+
+    @Benchmark
+    public Object getObj() {
+        return cacheService.getObj(BenchmarkRedis.BenchmarkKey.OBJ, nextKey());
+    }
+
+    @Benchmark
+    public Object setObj() {
+        return cacheService.setObj(BenchmarkRedis.BenchmarkKey.OBJ, nextKey(), value, TIMEOUT);
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)];
+    }
+}
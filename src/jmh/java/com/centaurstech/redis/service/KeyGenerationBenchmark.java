@@ -0,0 +1,71 @@
+package com.centaurstech.redis.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generateKey以及key编码为字节的耗时，generation为开启代数模式时的key
+ * encodeKey为直接编码为字节的路径，只在redis可用时使用，所以这里连接本机redis
+ * 使用-prof gc可以看到每次调用的内存分配
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyGenerationBenchmark {
+    private static final StringRedisSerializer KEY_SERIALIZER = new StringRedisSerializer();
+
+    @Param({"false", "true"})
+    public boolean generation;
+
+    private LettuceConnectionFactory factory;
+    private CacheService cacheService;
+    private final String key = "5d1c2f7e-9a41-4b7c-8e2a-3f6d0b9c1a2e";
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        factory = BenchmarkRedis.connect(true);
+        cacheService = new CacheService(BenchmarkRedis.redisService(factory));
+        if (generation) {
+            cacheService.enableGeneration(BenchmarkRedis.BenchmarkKey.OBJ);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cacheService.destroy();
+        factory.destroy();
+    }
+
+    @Benchmark
+    public String generateKey() {
+        return cacheService.generateKey(BenchmarkRedis.BenchmarkKey.OBJ, key);
+    }
+
+    @Benchmark
+    public byte[] generateAndEncodeKey() {
+        return KEY_SERIALIZER.serialize(cacheService.generateKey(BenchmarkRedis.BenchmarkKey.OBJ, key));
+    }
+
+    @Benchmark
+    public byte[] encodeKey() {
+        return cacheService.encodeKey(BenchmarkRedis.BenchmarkKey.OBJ, key);
+    }
+}
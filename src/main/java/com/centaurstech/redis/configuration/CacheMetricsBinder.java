@@ -0,0 +1,75 @@
+package com.centaurstech.redis.configuration;
+
+import com.centaurstech.redis.domain.BackendMetrics;
+import com.centaurstech.redis.domain.CacheBackend;
+import com.centaurstech.redis.domain.CacheMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 把CacheService的统计注册到Micrometer，标签为cache（bean名称）、namespace、backend，
+ * 之后新出现的namespace会自动注册
+ */
+public class CacheMetricsBinder implements MeterBinder {
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.99", "0.999"};
+
+    private final Map<String, CacheMetrics> metricsByCache;
+
+    /**
+     * @param metricsByCache cache名称到统计的映射
+     */
+    public CacheMetricsBinder(Map<String, CacheMetrics> metricsByCache) {
+        this.metricsByCache = metricsByCache;
+    }
+
+    public CacheMetricsBinder(String cacheName, CacheMetrics metrics) {
+        this(Collections.singletonMap(cacheName, metrics));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Map.Entry<String, CacheMetrics> entry : metricsByCache.entrySet()) {
+            String cacheName = entry.getKey();
+            CacheMetrics metrics = entry.getValue();
+            // 先监听再遍历，重复注册的指标会被Micrometer忽略
+            metrics.addNamespaceListener(namespace -> bind(registry, cacheName, metrics, namespace));
+            for (String namespace : metrics.getNamespaces()) {
+                bind(registry, cacheName, metrics, namespace);
+            }
+        }
+    }
+
+    private void bind(MeterRegistry registry, String cacheName, CacheMetrics metrics, String namespace) {
+        for (CacheBackend backend : CacheBackend.values()) {
+            BackendMetrics backendMetrics = metrics.get(namespace, backend);
+            Tags tags = Tags.of("cache", cacheName, "namespace", namespace, "backend", backend.name().toLowerCase(Locale.ROOT));
+            FunctionCounter.builder("centaurs.cache.requests", backendMetrics, BackendMetrics::getRequests)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("centaurs.cache.hits", backendMetrics, BackendMetrics::getHits)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("centaurs.cache.misses", backendMetrics, BackendMetrics::getMisses)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("centaurs.cache.errors", backendMetrics, BackendMetrics::getErrors)
+                    .tags(tags).register(registry);
+            FunctionCounter.builder("centaurs.cache.bytes.in", backendMetrics, BackendMetrics::getBytesIn)
+                    .tags(tags).baseUnit("bytes").register(registry);
+            FunctionCounter.builder("centaurs.cache.bytes.out", backendMetrics, BackendMetrics::getBytesOut)
+                    .tags(tags).baseUnit("bytes").register(registry);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                double percentile = PERCENTILES[i];
+                Gauge.builder("centaurs.cache.latency", backendMetrics,
+                        m -> m.getLatency().getValueAtPercentile(percentile) / 1000000.0)
+                        .tags(tags).tag("quantile", QUANTILES[i])
+                        .baseUnit("seconds").register(registry);
+            }
+        }
+    }
+}
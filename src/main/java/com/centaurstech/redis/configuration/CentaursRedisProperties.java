@@ -0,0 +1,331 @@
+package com.centaurstech.redis.configuration;
+
+import com.centaurstech.redis.domain.ConsistentHashRing;
+import com.centaurstech.redis.domain.NearCache;
+import com.centaurstech.redis.service.ReplicaRoutingRedisService;
+import com.centaurstech.redis.service.TwoTierCacheManager;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * centaurs.redis.* 配置
+ */
+@ConfigurationProperties(prefix = "centaurs.redis")
+public class CentaursRedisProperties {
+    private Codec codec = new Codec();
+    private Compression compression = new Compression();
+    private Cache cache = new Cache();
+    private Sharding sharding = new Sharding();
+    private Replica replica = new Replica();
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(Codec codec) {
+        this.codec = codec;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Sharding getSharding() {
+        return sharding;
+    }
+
+    public void setSharding(Sharding sharding) {
+        this.sharding = sharding;
+    }
+
+    public Replica getReplica() {
+        return replica;
+    }
+
+    public void setReplica(Replica replica) {
+        this.replica = replica;
+    }
+
+    public static class Codec {
+        public static final String JSON = "json";
+        public static final String SMILE = "smile";
+
+        /**
+         * redisTemplate（CacheService）写入value使用的编码：json或smile
+         */
+        private String redisTemplate = JSON;
+        /**
+         * redisTemplateV2（CacheServiceV2）写入value使用的编码：json或smile
+         */
+        private String redisTemplateV2 = JSON;
+        /**
+         * 二进制编码的类型编号，key为编号，value为类的全名
+         */
+        private Map<Integer, String> typeIds = new HashMap<>();
+
+        public String getRedisTemplate() {
+            return redisTemplate;
+        }
+
+        public void setRedisTemplate(String redisTemplate) {
+            this.redisTemplate = redisTemplate;
+        }
+
+        public String getRedisTemplateV2() {
+            return redisTemplateV2;
+        }
+
+        public void setRedisTemplateV2(String redisTemplateV2) {
+            this.redisTemplateV2 = redisTemplateV2;
+        }
+
+        public Map<Integer, String> getTypeIds() {
+            return typeIds;
+        }
+
+        public void setTypeIds(Map<Integer, String> typeIds) {
+            this.typeIds = typeIds;
+        }
+    }
+
+    public static class Compression {
+        /**
+         * 序列化后不小于该字节数的value会被压缩，0表示不压缩（仍能读取压缩过的数据）
+         */
+        private int threshold = 0;
+        /**
+         * Deflate压缩级别，1最快，9压缩率最高
+         */
+        private int level = Deflater.BEST_SPEED;
+
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Spring Cache（@Cacheable等）使用的两级缓存
+     */
+    public static class Cache {
+        /**
+         * redis中的缓存时间
+         */
+        private Duration ttl = Duration.ofMinutes(2);
+        /**
+         * 本地副本的最长存活时间，失效广播丢失时本地最多旧这么久
+         */
+        private Duration localTtl = Duration.ofMillis(TwoTierCacheManager.DEFAULT_LOCAL_TTL_MILLIS);
+        /**
+         * 每个缓存本地副本的最大条数，0为不使用本地缓存
+         */
+        private int localMaxEntries = NearCache.DEFAULT_MAX_ENTRIES;
+        /**
+         * 按缓存名单独配置，未设置的项使用上面的值
+         */
+        private Map<String, Spec> caches = new LinkedHashMap<>();
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getLocalTtl() {
+            return localTtl;
+        }
+
+        public void setLocalTtl(Duration localTtl) {
+            this.localTtl = localTtl;
+        }
+
+        public int getLocalMaxEntries() {
+            return localMaxEntries;
+        }
+
+        public void setLocalMaxEntries(int localMaxEntries) {
+            this.localMaxEntries = localMaxEntries;
+        }
+
+        public Map<String, Spec> getCaches() {
+            return caches;
+        }
+
+        public void setCaches(Map<String, Spec> caches) {
+            this.caches = caches;
+        }
+
+        public static class Spec {
+            private Duration ttl;
+            private Duration localTtl;
+            private Integer localMaxEntries;
+
+            public Duration getTtl() {
+                return ttl;
+            }
+
+            public void setTtl(Duration ttl) {
+                this.ttl = ttl;
+            }
+
+            public Duration getLocalTtl() {
+                return localTtl;
+            }
+
+            public void setLocalTtl(Duration localTtl) {
+                this.localTtl = localTtl;
+            }
+
+            public Integer getLocalMaxEntries() {
+                return localMaxEntries;
+            }
+
+            public void setLocalMaxEntries(Integer localMaxEntries) {
+                this.localMaxEntries = localMaxEntries;
+            }
+        }
+    }
+
+    /**
+     * 客户端一致性哈希分片，开启后CacheService的数据分散到多个redis实例
+     */
+    public static class Sharding {
+        private boolean enabled = false;
+        /**
+         * 分片地址host:port，同时作为分片在哈希环上的名字，换地址会改变key的归属
+         */
+        private List<String> nodes = new ArrayList<>();
+        /**
+         * 每个分片在哈希环上的虚拟节点数，越多分布越均匀
+         */
+        private int virtualNodes = ConsistentHashRing.DEFAULT_VIRTUAL_NODES;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+    }
+
+    /**
+     * 读写分离，开启后CacheService的读操作访问从节点，不能与分片同时开启
+     */
+    public static class Replica {
+        private boolean enabled = false;
+        /**
+         * 从节点地址host:port，读请求轮流访问
+         */
+        private List<String> nodes = new ArrayList<>();
+        private Hedge hedge = new Hedge();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public Hedge getHedge() {
+            return hedge;
+        }
+
+        public void setHedge(Hedge hedge) {
+            this.hedge = hedge;
+        }
+
+        public static class Hedge {
+            private boolean enabled = false;
+            /**
+             * 读请求超过最近读延迟的该百分位仍未返回时，向另一个节点再发一次
+             */
+            private double percentile = ReplicaRoutingRedisService.DEFAULT_HEDGE_PERCENTILE;
+            /**
+             * 再发一次之前至少等待的时间
+             */
+            private Duration minDelay = Duration.ofMillis(ReplicaRoutingRedisService.DEFAULT_HEDGE_MIN_DELAY_MILLIS);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public double getPercentile() {
+                return percentile;
+            }
+
+            public void setPercentile(double percentile) {
+                this.percentile = percentile;
+            }
+
+            public Duration getMinDelay() {
+                return minDelay;
+            }
+
+            public void setMinDelay(Duration minDelay) {
+                this.minDelay = minDelay;
+            }
+        }
+    }
+}
@@ -1,56 +1,117 @@
 package com.centaurstech.redis.configuration;
 
+import com.centaurstech.redis.domain.CacheMetrics;
+import com.centaurstech.redis.serializer.CodecRedisSerializer;
+import com.centaurstech.redis.serializer.CompressingRedisSerializer;
+import com.centaurstech.redis.serializer.SmileValueCodec;
+import com.centaurstech.redis.serializer.TypeIdRegistry;
+import com.centaurstech.redis.service.CacheServiceWrapper;
+import com.centaurstech.redis.service.InvalidationBus;
+import com.centaurstech.redis.service.ReplicaRoutingRedisService;
+import com.centaurstech.redis.service.ShardedRedisService;
+import com.centaurstech.redis.service.TwoTierCacheManager;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.lettuce.core.ClientOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.AllNestedConditions;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableAutoConfiguration
 @EnableCaching
+@EnableConfigurationProperties(CentaursRedisProperties.class)
 public class RedisConfig extends CachingConfigurerSupport {
     Logger logger = LoggerFactory.getLogger(RedisConfig.class);
 
     /**
-     * 选择redis作为默认缓存工具
+     * 选择redis作为默认缓存工具，前面加一层本地缓存，按centaurs.redis.cache配置每个缓存的ttl和本地容量
      *
      * @param factory
      * @return
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory factory) {
+    public CacheManager cacheManager(RedisConnectionFactory factory, CentaursRedisProperties properties,
+                                     @Qualifier("redisTemplate") RedisTemplate<String, Object> redisTemplate) {
+        CentaursRedisProperties.Cache cache = properties.getCache();
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofSeconds(2 * 60))
+                .entryTtl(cache.getTtl())
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()))
                 .disableCachingNullValues();
+        Map<String, RedisCacheConfiguration> cacheConfigs = new LinkedHashMap<>();
+        for (Map.Entry<String, CentaursRedisProperties.Cache.Spec> entry : cache.getCaches().entrySet()) {
+            Duration ttl = entry.getValue().getTtl();
+            cacheConfigs.put(entry.getKey(), ttl == null ? config : config.entryTtl(ttl));
+        }
 
         RedisCacheManager redisCacheManager = RedisCacheManager.builder(factory)
                 .cacheDefaults(config)
-                .transactionAware()
+                .withInitialCacheConfigurations(cacheConfigs)
                 .build();
-        return redisCacheManager;
+        redisCacheManager.afterPropertiesSet();
+
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(redisCacheManager, new InvalidationBus(redisTemplate));
+        cacheManager.setDefaultLocal(cache.getLocalTtl().toMillis(), cache.getLocalMaxEntries());
+        for (Map.Entry<String, CentaursRedisProperties.Cache.Spec> entry : cache.getCaches().entrySet()) {
+            CentaursRedisProperties.Cache.Spec spec = entry.getValue();
+            Duration localTtl = spec.getLocalTtl() == null ? cache.getLocalTtl() : spec.getLocalTtl();
+            int localMaxEntries = spec.getLocalMaxEntries() == null ? cache.getLocalMaxEntries() : spec.getLocalMaxEntries();
+            cacheManager.setLocal(entry.getKey(), localTtl.toMillis(), localMaxEntries);
+        }
+        cacheManager.setTransactionAware(true);
+        return cacheManager;
+    }
+
+    /**
+     * 二进制编码的类型编号，启动后也可以注入再注册，但必须在写入数据之前且所有节点一致
+     *
+     * @param properties
+     * @return
+     */
+    @Bean
+    public TypeIdRegistry redisTypeIdRegistry(CentaursRedisProperties properties) {
+        TypeIdRegistry registry = new TypeIdRegistry();
+        for (Map.Entry<Integer, String> entry : properties.getCodec().getTypeIds().entrySet()) {
+            registry.register(entry.getKey(), entry.getValue());
+        }
+        return registry;
     }
 
     /**
@@ -61,7 +122,8 @@ public class RedisConfig extends CachingConfigurerSupport {
      */
     @Bean
     @Qualifier("redisTemplateV2")
-    public RedisTemplate<String, Object> redisTemplateV2(RedisConnectionFactory factory) {
+    public RedisTemplate<String, Object> redisTemplateV2(RedisConnectionFactory factory, CentaursRedisProperties properties,
+                                                         TypeIdRegistry redisTypeIdRegistry) {
 
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         // 配置连接工厂
@@ -83,8 +145,9 @@ public class RedisConfig extends CachingConfigurerSupport {
         om.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
         jacksonSeial.setObjectMapper(om);
 
-        // 值采用json序列化
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // 值默认采用json序列化，可通过centaurs.redis.codec.redis-template-v2切换
+        template.setValueSerializer(valueSerializer(properties.getCodec().getRedisTemplateV2(),
+                new GenericJackson2JsonRedisSerializer(), properties, redisTypeIdRegistry));
         //使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
 
@@ -98,8 +161,18 @@ public class RedisConfig extends CachingConfigurerSupport {
 
     @Bean
     @Qualifier("redisTemplate")
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory, CentaursRedisProperties properties,
+                                                       TypeIdRegistry redisTypeIdRegistry) {
+        RedisTemplate<String, Object> template = createRedisTemplate(factory, properties, redisTypeIdRegistry);
+        logger.info("redisTemplate" + template.toString());
+        return template;
+    }
 
+    /**
+     * redisTemplate的配置，分片时每个分片使用相同的配置
+     */
+    static RedisTemplate<String, Object> createRedisTemplate(RedisConnectionFactory factory, CentaursRedisProperties properties,
+                                                             TypeIdRegistry redisTypeIdRegistry) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         // 配置连接工厂
         template.setConnectionFactory(factory);
@@ -118,8 +191,8 @@ public class RedisConfig extends CachingConfigurerSupport {
         om.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
         jacksonSeial.setObjectMapper(om);
 
-        // 值采用json序列化
-        template.setValueSerializer(jacksonSeial);
+        // 值默认采用json序列化，可通过centaurs.redis.codec.redis-template切换
+        template.setValueSerializer(valueSerializer(properties.getCodec().getRedisTemplate(), jacksonSeial, properties, redisTypeIdRegistry));
         //使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
 
@@ -127,8 +200,169 @@ public class RedisConfig extends CachingConfigurerSupport {
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
         template.afterPropertiesSet();
-        logger.info("redisTemplate" + template.toString());
         return template;
     }
 
+    /**
+     * 无论写入哪种编码，都能读取旧的JSON数据、其他编码的数据和压缩过的数据
+     *
+     * @param codec      写入使用的编码
+     * @param legacy     原来的JSON序列化器
+     * @param properties
+     * @param registry
+     * @return
+     */
+    private static RedisSerializer<Object> valueSerializer(String codec, RedisSerializer<?> legacy,
+                                                    CentaursRedisProperties properties, TypeIdRegistry registry) {
+        SmileValueCodec smile = new SmileValueCodec(registry);
+        RedisSerializer<Object> serializer;
+        if (CentaursRedisProperties.Codec.JSON.equalsIgnoreCase(codec)) {
+            serializer = new CodecRedisSerializer(null, legacy, smile);
+        } else if (CentaursRedisProperties.Codec.SMILE.equalsIgnoreCase(codec)) {
+            serializer = new CodecRedisSerializer(smile, legacy);
+        } else {
+            throw new IllegalArgumentException("Unknown redis value codec: " + codec);
+        }
+        CentaursRedisProperties.Compression compression = properties.getCompression();
+        return new CompressingRedisSerializer(serializer, compression.getThreshold(), compression.getLevel());
+    }
+
+    /**
+     * centaurs.redis.sharding.enabled为true时，CacheService使用按一致性哈希分片到多个redis实例的ShardedRedisService
+     * 每个分片使用spring.redis中的密码、database和超时设置
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "centaurs.redis.sharding", name = "enabled", havingValue = "true")
+    static class ShardingConfiguration implements DisposableBean {
+        private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+        @Bean
+        @Qualifier("redisService")
+        public ShardedRedisService redisService(CentaursRedisProperties properties, RedisProperties redisProperties,
+                                                TypeIdRegistry redisTypeIdRegistry) {
+            if (properties.getReplica().isEnabled()) {
+                throw new IllegalStateException("centaurs.redis.sharding and centaurs.redis.replica cannot be enabled at the same time");
+            }
+            CentaursRedisProperties.Sharding sharding = properties.getSharding();
+            if (sharding.getNodes().isEmpty()) {
+                throw new IllegalArgumentException("centaurs.redis.sharding.nodes is empty");
+            }
+            Map<String, RedisTemplate<String, Object>> shards = new LinkedHashMap<>();
+            for (String node : sharding.getNodes()) {
+                LettuceConnectionFactory factory = createConnectionFactory(node, redisProperties, false);
+                this.factories.add(factory);
+                shards.put(node, createRedisTemplate(factory, properties, redisTypeIdRegistry));
+            }
+            return new ShardedRedisService(shards, sharding.getVirtualNodes());
+        }
+
+        @Override
+        public void destroy() {
+            for (LettuceConnectionFactory factory : this.factories) {
+                factory.destroy();
+            }
+        }
+    }
+
+    /**
+     * centaurs.redis.replica.enabled为true时，CacheService的读操作访问从节点，写操作仍访问spring.redis配置的主节点
+     * 不能与分片同时开启：同时开启时跳过本配置，由ShardingConfiguration启动失败并说明原因
+     */
+    @Configuration
+    @Conditional(ReplicaWithoutShardingCondition.class)
+    static class ReplicaConfiguration implements DisposableBean {
+        private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+
+        @Bean
+        @Qualifier("redisService")
+        public ReplicaRoutingRedisService redisService(@Qualifier("redisTemplate") RedisTemplate<String, Object> redisTemplate,
+                                                       CentaursRedisProperties properties, RedisProperties redisProperties,
+                                                       TypeIdRegistry redisTypeIdRegistry) {
+            CentaursRedisProperties.Replica replica = properties.getReplica();
+            if (replica.getNodes().isEmpty()) {
+                throw new IllegalArgumentException("centaurs.redis.replica.nodes is empty");
+            }
+            Map<String, RedisTemplate<String, Object>> replicas = new LinkedHashMap<>();
+            for (String node : replica.getNodes()) {
+                LettuceConnectionFactory factory = createConnectionFactory(node, redisProperties, true);
+                this.factories.add(factory);
+                replicas.put(node, createRedisTemplate(factory, properties, redisTypeIdRegistry));
+            }
+            ReplicaRoutingRedisService redisService = new ReplicaRoutingRedisService(redisTemplate, replicas);
+            if (replica.getHedge().isEnabled()) {
+                redisService.enableHedgedReads(replica.getHedge().getPercentile(), replica.getHedge().getMinDelay().toMillis());
+            }
+            return redisService;
+        }
+
+        @Override
+        public void destroy() {
+            for (LettuceConnectionFactory factory : this.factories) {
+                factory.destroy();
+            }
+        }
+    }
+
+    static class ReplicaWithoutShardingCondition extends AllNestedConditions {
+        ReplicaWithoutShardingCondition() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnProperty(prefix = "centaurs.redis.replica", name = "enabled", havingValue = "true")
+        static class ReplicaEnabled {
+        }
+
+        @ConditionalOnProperty(prefix = "centaurs.redis.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+        static class ShardingDisabled {
+        }
+    }
+
+    /**
+     * 分片或从节点的连接，密码、database和超时使用spring.redis中的设置
+     *
+     * @param node                   host:port
+     * @param rejectWhenDisconnected 断线时直接拒绝命令而不是排队等待重连，用于可以改读主节点的从节点
+     */
+    static LettuceConnectionFactory createConnectionFactory(String node, RedisProperties redisProperties,
+                                                            boolean rejectWhenDisconnected) {
+        int colon = node.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Redis node should be host:port, got " + node);
+        }
+        RedisStandaloneConfiguration standalone = new RedisStandaloneConfiguration(
+                node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+        standalone.setDatabase(redisProperties.getDatabase());
+        if (redisProperties.getPassword() != null) {
+            standalone.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        }
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder client = LettuceClientConfiguration.builder();
+        if (redisProperties.getTimeout() != null) {
+            client.commandTimeout(redisProperties.getTimeout());
+        }
+        if (rejectWhenDisconnected) {
+            client.clientOptions(ClientOptions.builder()
+                    .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                    .build());
+        }
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(standalone, client.build());
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    /**
+     * 引入了micrometer时，把各CacheService的统计注册到MeterRegistry
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class CacheMetricsConfiguration {
+        @Bean
+        public CacheMetricsBinder cacheMetricsBinder(Map<String, CacheServiceWrapper> cacheServices) {
+            Map<String, CacheMetrics> metricsByCache = new LinkedHashMap<>();
+            for (Map.Entry<String, CacheServiceWrapper> entry : cacheServices.entrySet()) {
+                metricsByCache.put(entry.getKey(), entry.getValue().getMetrics());
+            }
+            return new CacheMetricsBinder(metricsByCache);
+        }
+    }
+
 }
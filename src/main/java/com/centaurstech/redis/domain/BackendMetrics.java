@@ -0,0 +1,106 @@
+package com.centaurstech.redis.domain;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个namespace在一种存储上的统计，全部为LongAdder和分段直方图，记录时不分配对象
+ */
+public class BackendMetrics {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param latencyNanos 耗时，单位纳秒
+     * @param bytesIn      从redis读到的字节数
+     * @param bytesOut     写入redis的字节数
+     */
+    public void recordRequest(long latencyNanos, long bytesIn, long bytesOut) {
+        this.requests.increment();
+        this.latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        if (bytesIn > 0) {
+            this.bytesIn.add(bytesIn);
+        }
+        if (bytesOut > 0) {
+            this.bytesOut.add(bytesOut);
+        }
+    }
+
+    public void recordError(long latencyNanos) {
+        this.errors.increment();
+        recordRequest(latencyNanos, 0, 0);
+    }
+
+    public void recordLookup(boolean hit) {
+        if (hit) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+    }
+
+    public void recordLookups(long hits, long misses) {
+        this.hits.add(hits);
+        this.misses.add(misses);
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 命中率，没有读取时返回0
+     */
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * 单位微秒
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "BackendMetrics{" +
+                "requests=" + getRequests() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", errors=" + getErrors() +
+                ", bytesIn=" + getBytesIn() +
+                ", bytesOut=" + getBytesOut() +
+                ", p50=" + latency.getValueAtPercentile(50) + "us" +
+                ", p99=" + latency.getValueAtPercentile(99) + "us" +
+                ", p999=" + latency.getValueAtPercentile(99.9) + "us" +
+                '}';
+    }
+}
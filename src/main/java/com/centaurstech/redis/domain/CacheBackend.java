@@ -0,0 +1,15 @@
+package com.centaurstech.redis.domain;
+
+/**
+ * 实际处理请求的存储
+ */
+public enum CacheBackend {
+    /**
+     * redis（包括本地一级缓存命中）
+     */
+    REDIS,
+    /**
+     * redis不可用时使用的本地内存
+     */
+    MEMORY
+}
@@ -0,0 +1,55 @@
+package com.centaurstech.redis.domain;
+
+import com.centaurstech.redis.interfaces.NamespaceListener;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 按RedisKey前缀（namespace）和存储分别统计请求数、命中、错误、字节数和延迟
+ */
+public class CacheMetrics {
+    private final ConcurrentMap<String, BackendMetrics[]> namespaces = new ConcurrentHashMap<>();
+    private final List<NamespaceListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 第一次访问某个namespace时创建
+     */
+    public BackendMetrics get(String namespace, CacheBackend backend) {
+        BackendMetrics[] metrics = namespaces.get(namespace);
+        if (metrics == null) {
+            metrics = create(namespace);
+        }
+        return metrics[backend.ordinal()];
+    }
+
+    private BackendMetrics[] create(String namespace) {
+        BackendMetrics[] created = new BackendMetrics[CacheBackend.values().length];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = new BackendMetrics();
+        }
+        BackendMetrics[] existing = namespaces.putIfAbsent(namespace, created);
+        if (existing != null) {
+            return existing;
+        }
+        for (NamespaceListener listener : listeners) {
+            listener.onNewNamespace(namespace);
+        }
+        return created;
+    }
+
+    public Set<String> getNamespaces() {
+        return Collections.unmodifiableSet(namespaces.keySet());
+    }
+
+    /**
+     * 监听新出现的namespace，如用于向监控系统注册指标
+     */
+    public void addNamespaceListener(NamespaceListener listener) {
+        listeners.add(listener);
+    }
+}
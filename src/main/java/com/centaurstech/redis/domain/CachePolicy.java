@@ -0,0 +1,128 @@
+package com.centaurstech.redis.domain;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RedisKey的缓存策略，由RedisKey.getCachePolicy()声明，CacheService在该前缀第一次使用时读取并自动应用
+ * 未设置的项使用CacheService的默认值。不可变，每个设置方法返回新的对象：
+ * <pre>
+ * CachePolicy.defaults().ttl(10 * 60 * 1000L).ttlJitter(0.1).nearCache(5000L, 2000).codec("smile")
+ * </pre>
+ */
+public final class CachePolicy {
+    private static final CachePolicy DEFAULTS = new CachePolicy(null, 0D, 0L, NearCache.DEFAULT_MAX_ENTRIES, null, null);
+
+    private final Long ttlMillis;
+    private final double ttlJitter;
+    private final long nearCacheTtlMillis;
+    private final int maxLocalEntries;
+    private final String codec;
+    private final Integer compressionThreshold;
+
+    private CachePolicy(Long ttlMillis, double ttlJitter, long nearCacheTtlMillis, int maxLocalEntries,
+                        String codec, Integer compressionThreshold) {
+        this.ttlMillis = ttlMillis;
+        this.ttlJitter = ttlJitter;
+        this.nearCacheTtlMillis = nearCacheTtlMillis;
+        this.maxLocalEntries = maxLocalEntries;
+        this.codec = codec;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * 全部使用默认值的策略
+     */
+    public static CachePolicy defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * 未指定timeout时的缓存时间，单位毫秒
+     */
+    public CachePolicy ttl(long ttlMillis) {
+        return new CachePolicy(ttlMillis, ttlJitter, nearCacheTtlMillis, maxLocalEntries, codec, compressionThreshold);
+    }
+
+    /**
+     * 缓存时间随机延长的比例（0到1），如0.1表示在ttl到ttl * 1.1之间随机，
+     * 避免同一批写入的数据同时过期，集中回源
+     */
+    public CachePolicy ttlJitter(double ttlJitter) {
+        if (ttlJitter < 0 || ttlJitter > 1) {
+            throw new IllegalArgumentException("ttlJitter must be between 0 and 1");
+        }
+        return new CachePolicy(ttlMillis, ttlJitter, nearCacheTtlMillis, maxLocalEntries, codec, compressionThreshold);
+    }
+
+    /**
+     * 开启本地一级缓存，参见CacheServiceWrapper.enableNearCache
+     *
+     * @param ttlMillis       本地副本的最长存活时间，单位毫秒
+     * @param maxLocalEntries 本地副本的最大条数
+     */
+    public CachePolicy nearCache(long ttlMillis, int maxLocalEntries) {
+        return new CachePolicy(this.ttlMillis, ttlJitter, ttlMillis, maxLocalEntries, codec, compressionThreshold);
+    }
+
+    public CachePolicy nearCache(long ttlMillis) {
+        return nearCache(ttlMillis, NearCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * 写入使用的value编码（json、smile），读取时自动识别，不影响其他前缀
+     */
+    public CachePolicy codec(String codec) {
+        return new CachePolicy(ttlMillis, ttlJitter, nearCacheTtlMillis, maxLocalEntries, codec, compressionThreshold);
+    }
+
+    /**
+     * 压缩阈值（字节），0为不压缩，覆盖centaurs.redis.compression.threshold
+     */
+    public CachePolicy compressionThreshold(int compressionThreshold) {
+        return new CachePolicy(ttlMillis, ttlJitter, nearCacheTtlMillis, maxLocalEntries, codec, compressionThreshold);
+    }
+
+    public Long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public double getTtlJitter() {
+        return ttlJitter;
+    }
+
+    /**
+     * 为0时不开启一级缓存
+     */
+    public long getNearCacheTtlMillis() {
+        return nearCacheTtlMillis;
+    }
+
+    public int getMaxLocalEntries() {
+        return maxLocalEntries;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public Integer getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * 是否需要与template不同的value序列化方式
+     */
+    public boolean hasSerializationSettings() {
+        return codec != null || compressionThreshold != null;
+    }
+
+    /**
+     * 按ttlJitter随机延长缓存时间，不大于0的时间（不过期）原样返回
+     */
+    public long applyJitter(long timeoutMillis) {
+        if (ttlJitter == 0 || timeoutMillis <= 0) {
+            return timeoutMillis;
+        }
+        return timeoutMillis + (long) (timeoutMillis * ttlJitter * ThreadLocalRandom.current().nextDouble());
+    }
+}
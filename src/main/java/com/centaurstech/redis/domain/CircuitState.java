@@ -0,0 +1,19 @@
+package com.centaurstech.redis.domain;
+
+/**
+ * redis熔断器状态
+ */
+public enum CircuitState {
+    /**
+     * redis正常，请求访问redis
+     */
+    CLOSED,
+    /**
+     * redis不可用，请求直接使用本地内存，后台定时探测
+     */
+    OPEN,
+    /**
+     * 正在探测redis是否恢复，请求仍使用本地内存
+     */
+    HALF_OPEN
+}
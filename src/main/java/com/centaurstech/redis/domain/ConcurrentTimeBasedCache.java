@@ -0,0 +1,594 @@
+package com.centaurstech.redis.domain;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 线程安全、有容量上限的过期缓存，用于替代TimeBasedCache
+ * <p>
+ * 数据存放在ConcurrentHashMap中，读写都不需要等锁；淘汰策略为W-TinyLFU：
+ * 新数据先进入占总容量1%的窗口LRU，窗口溢出的数据需要与主区（SLRU，probation + protected）
+ * 最久未用的数据比较访问频率，频率高者留下。
+ * 读操作只把命中的节点写入分段的有损缓冲区；写操作直接修改ConcurrentHashMap，再把对淘汰队列的修改
+ * 放入无损的写缓冲区。两个缓冲区由tryLock拿到锁的线程批量回放，所以大量线程并发读写时不会争抢同一把锁，
+ * 代价是淘汰略有滞后，条数可能短暂超过上限。写缓冲区满时写线程等锁回放，避免滞后过多。
+ * 过期的数据在读取时移除，同时回放写操作时会顺带增量扫描一部分数据，清理写入后再也没被读过的过期数据。
+ *
+ * @param <Content>
+ */
+public class ConcurrentTimeBasedCache<Content> {
+
+    public static final long DEFAULT_EXPIRE_IN = 600 * 1000L;
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000L;
+
+    /**
+     * 每次写操作顺带检查的数据条数
+     */
+    private static final int SWEEP_BATCH = 32;
+
+    /**
+     * 写缓冲区最多积压的操作数，超过时写线程等锁回放
+     */
+    private static final int WRITE_BUFFER_MAX = 1024;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int DEAD = -1;
+    /**
+     * 已放入ConcurrentHashMap，加入淘汰队列的操作还在写缓冲区中
+     */
+    private static final int NEW = -2;
+
+    /**
+     * 计算每条数据的权重，默认每条为1，此时最大权重即最大条数
+     *
+     * @param <V>
+     */
+    public interface Weigher<V> {
+        int weigh(String key, V value);
+    }
+
+    private final long expireIn;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Weigher<? super Content> weigher;
+
+    private final ConcurrentHashMap<String, Node<Content>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer<Content> readBuffer = new ReadBuffer<>();
+    private final ConcurrentLinkedQueue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    // 以下字段（以及Node的queue、prev、next）只在持有evictionLock时访问
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<Content> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<Content> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<Content> protectedDeque = new AccessOrderDeque<>();
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+    private Iterator<Node<Content>> sweepIterator;
+
+    public ConcurrentTimeBasedCache(long expireInMillis, long maximumWeight, Weigher<? super Content> weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+        this.expireIn = expireInMillis;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1L, maximumWeight / 100);
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * 0.8);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(maximumWeight);
+    }
+
+    public ConcurrentTimeBasedCache(long expireInMillis, long maximumSize) {
+        this(expireInMillis, maximumSize, (key, value) -> 1);
+    }
+
+    public ConcurrentTimeBasedCache(long expireInMillis) {
+        this(expireInMillis, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public ConcurrentTimeBasedCache() {
+        this(DEFAULT_EXPIRE_IN);
+    }
+
+    public void put(String key, Content content) {
+        this.put(key, content, expireIn);
+    }
+
+    /**
+     * 放入数据，content为null时等同于remove
+     *
+     * @param key
+     * @param content
+     * @param expireIn 过期时长，单位毫秒
+     */
+    public void put(String key, Content content, Long expireIn) {
+        if (content == null) {
+            remove(key);
+            return;
+        }
+        Node<Content> node = newNode(key, content, expireIn);
+        Node<Content> old = data.put(key, node);
+        afterWrite(() -> {
+            if (old != null) {
+                unlink(old);
+            }
+            link(node);
+        });
+    }
+
+    /**
+     * 不存在（或已过期）时才放入
+     *
+     * @return 已存在时返回原有的值，放入成功返回null
+     */
+    @SuppressWarnings("unchecked")
+    public Content putIfAbsent(String key, Content content, Long expireIn) {
+        Node<Content> node = newNode(key, content, expireIn);
+        long now = System.currentTimeMillis();
+        Object[] replaced = new Object[1];
+        Node<Content> current = data.compute(key, (k, old) -> {
+            if (old != null && !old.isExpired(now)) {
+                return old;
+            }
+            replaced[0] = old;
+            return node;
+        });
+        if (current != node) {
+            return current.value;
+        }
+        Node<Content> old = (Node<Content>) replaced[0];
+        afterWrite(() -> {
+            if (old != null) {
+                unlink(old);
+            }
+            link(node);
+        });
+        return null;
+    }
+
+    public Content get(String key) {
+        Node<Content> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.isExpired(System.currentTimeMillis())) {
+            removeNode(key, node);
+            return null;
+        }
+        afterRead(node);
+        return node.value;
+    }
+
+    public boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    public Content remove(String key) {
+        Node<Content> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        afterWrite(() -> unlink(node));
+        return node.isExpired(System.currentTimeMillis()) ? null : node.value;
+    }
+
+    public void clear() {
+        for (Node<Content> node : data.values()) {
+            removeNode(node.key, node);
+        }
+    }
+
+    /**
+     * 移除所有以prefix开头的key
+     *
+     * @return 移除的条数
+     */
+    public long removeByPrefix(String prefix) {
+        long removed = 0;
+        for (Node<Content> node : data.values()) {
+            if (node.key.startsWith(prefix) && removeNode(node.key, node)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 当前条数，可能包含尚未清理的过期数据
+     */
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * 已回放的总权重，不包含还在写缓冲区中的操作
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * 回放所有缓冲的读写操作，并清理所有过期数据
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            long now = System.currentTimeMillis();
+            for (Node<Content> node : data.values()) {
+                if (node.isExpired(now) && data.remove(node.key, node)) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    private Node<Content> newNode(String key, Content content, Long expireIn) {
+        long ttl = expireIn == null ? this.expireIn : expireIn;
+        int weight = weigher.weigh(key, content);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight must not be negative");
+        }
+        return new Node<>(key, content, System.currentTimeMillis() + ttl, weight);
+    }
+
+    private boolean removeNode(String key, Node<Content> node) {
+        if (!data.remove(key, node)) {
+            return false;
+        }
+        afterWrite(() -> unlink(node));
+        return true;
+    }
+
+    private void afterRead(Node<Content> node) {
+        if (!readBuffer.offer(node) && evictionLock.tryLock()) {
+            // 缓冲区满了，拿到锁的线程负责回放，拿不到就丢弃这次访问记录
+            try {
+                readBuffer.drainTo(this);
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+    /**
+     * ConcurrentHashMap已经修改，把对淘汰队列的修改放入写缓冲区并尝试回放
+     */
+    private void afterWrite(Runnable task) {
+        if (pendingWrites.incrementAndGet() <= WRITE_BUFFER_MAX) {
+            writeBuffer.add(task);
+            scheduleDrain();
+            return;
+        }
+        pendingWrites.decrementAndGet();
+        // 写入速度超过了回放速度，等锁回放，淘汰不能一直滞后
+        evictionLock.lock();
+        try {
+            task.run();
+            maintenance();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * 拿到锁就回放，拿不到说明有其他线程正在回放，它释放锁时会再检查写缓冲区
+     */
+    private void scheduleDrain() {
+        while (!writeBuffer.isEmpty() && evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 释放锁，持锁期间其他线程放入写缓冲区的操作由本线程接着回放
+     */
+    private void unlock() {
+        evictionLock.unlock();
+        scheduleDrain();
+    }
+
+    /**
+     * 回放读写缓冲区，之后按容量淘汰并增量清理过期数据，需持有evictionLock
+     */
+    private void maintenance() {
+        readBuffer.drainTo(this);
+        boolean written = false;
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+            written = true;
+        }
+        if (written) {
+            evictAndSweep();
+        }
+    }
+
+    /**
+     * 回放一次命中
+     */
+    void onAccess(Node<Content> node) {
+        if (node.queue < 0) {
+            return;
+        }
+        sketch.increment(node.key);
+        if (node.queue == WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedDeque.addLast(node);
+            protectedWeight += node.weight;
+            demoteFromProtected();
+        } else if (node.queue == PROTECTED) {
+            protectedDeque.moveToBack(node);
+        }
+    }
+
+    private void link(Node<Content> node) {
+        if (node.queue != NEW) {
+            // 加入前已被移除或替换
+            return;
+        }
+        sketch.increment(node.key);
+        node.queue = WINDOW;
+        window.addLast(node);
+        windowWeight += node.weight;
+        totalWeight += node.weight;
+    }
+
+    private void unlink(Node<Content> node) {
+        if (node.queue == WINDOW) {
+            window.remove(node);
+            windowWeight -= node.weight;
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+        } else if (node.queue == PROTECTED) {
+            protectedDeque.remove(node);
+            protectedWeight -= node.weight;
+        } else {
+            // 尚未加入淘汰队列（之后的加入操作会被跳过）或已经移除
+            node.queue = DEAD;
+            return;
+        }
+        totalWeight -= node.weight;
+        node.queue = DEAD;
+    }
+
+    private void evictAndSweep() {
+        // 窗口溢出的数据进入probation，成为淘汰候选
+        while (windowWeight > windowMaximum && window.peekFirst() != null) {
+            Node<Content> candidate = window.pollFirst();
+            windowWeight -= candidate.weight;
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+        }
+        evictEntries();
+        sweep();
+    }
+
+    private void demoteFromProtected() {
+        while (protectedWeight > protectedMaximum && protectedDeque.peekFirst() != null) {
+            Node<Content> demoted = protectedDeque.pollFirst();
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    /**
+     * 总权重超限时，比较probation队尾的候选者与队首的牺牲者的访问频率，淘汰频率低的一方
+     */
+    private void evictEntries() {
+        long now = System.currentTimeMillis();
+        while (totalWeight > maximumWeight) {
+            Node<Content> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedDeque.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            Node<Content> candidate = probation.peekLast();
+            if (candidate == null || candidate == victim || victim.isExpired(now)) {
+                evict(victim);
+            } else if (candidate.isExpired(now)) {
+                evict(candidate);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node<Content> node) {
+        data.remove(node.key, node);
+        unlink(node);
+    }
+
+    /**
+     * 增量扫描，清理写入后没有再被读过的过期数据
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < SWEEP_BATCH; i++) {
+            if (sweepIterator == null || !sweepIterator.hasNext()) {
+                sweepIterator = data.values().iterator();
+                if (!sweepIterator.hasNext()) {
+                    return;
+                }
+            }
+            Node<Content> node = sweepIterator.next();
+            if (node.isExpired(now) && data.remove(node.key, node)) {
+                unlink(node);
+            }
+        }
+    }
+
+    static final class Node<Content> {
+        final String key;
+        final Content value;
+        final long expireAt;
+        final int weight;
+        int queue = NEW;
+        Node<Content> prev;
+        Node<Content> next;
+
+        Node(String key, Content value, long expireAt, int weight) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+            this.weight = weight;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expireAt;
+        }
+    }
+
+    /**
+     * 侵入式双向链表，队首为最久未访问
+     */
+    static final class AccessOrderDeque<Content> {
+        private Node<Content> first;
+        private Node<Content> last;
+
+        Node<Content> peekFirst() {
+            return first;
+        }
+
+        Node<Content> peekLast() {
+            return last;
+        }
+
+        void addLast(Node<Content> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        Node<Content> pollFirst() {
+            Node<Content> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void remove(Node<Content> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<Content> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * 分段的有损读缓冲区，按线程id选择分段，分段满了直接丢弃
+     */
+    static final class ReadBuffer<Content> {
+        private static final int STRIPES = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+        private static final int STRIPE_MASK = STRIPES - 1;
+        private static final int BUFFER_SIZE = 16;
+        private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+        private final Stripe<Content>[] stripes;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ReadBuffer() {
+            stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe<>();
+            }
+        }
+
+        /**
+         * @return false表示缓冲区已满，需要回放
+         */
+        boolean offer(Node<Content> node) {
+            Stripe<Content> stripe = stripes[(int) Thread.currentThread().getId() & STRIPE_MASK];
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+            if (tail - head >= BUFFER_SIZE) {
+                return false;
+            }
+            if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+                stripe.buffer.lazySet((int) (tail & BUFFER_MASK), node);
+            }
+            // CAS失败说明有其他线程在写同一分段，丢弃这次记录即可
+            return true;
+        }
+
+        void drainTo(ConcurrentTimeBasedCache<Content> cache) {
+            for (Stripe<Content> stripe : stripes) {
+                long head = stripe.readCounter;
+                long tail = stripe.writeCounter.get();
+                for (; head < tail; head++) {
+                    int index = (int) (head & BUFFER_MASK);
+                    Node<Content> node = stripe.buffer.get(index);
+                    if (node == null) {
+                        // 已占位但还没写入，下次再回放
+                        break;
+                    }
+                    stripe.buffer.lazySet(index, null);
+                    cache.onAccess(node);
+                }
+                stripe.readCounter = head;
+            }
+        }
+
+        private static int ceilingPowerOfTwo(int x) {
+            return x <= 1 ? 1 : 1 << -Integer.numberOfLeadingZeros(x - 1);
+        }
+
+        static final class Stripe<Content> {
+            final AtomicReferenceArray<Node<Content>> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+            final AtomicLong writeCounter = new AtomicLong();
+            volatile long readCounter;
+        }
+    }
+}
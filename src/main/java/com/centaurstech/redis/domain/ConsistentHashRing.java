@@ -0,0 +1,205 @@
+package com.centaurstech.redis.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一致性哈希环，每个节点在环上放置virtualNodes个虚拟节点，哈希函数为MurmurHash3（32位）
+ * 增加或移除一个节点时只有约1/N的key改变归属；节点按名字放置，同名节点换地址后key的归属不变
+ * key中含有"{tag}"时只对tag计算哈希（与Redis Cluster的hash tag相同），用于让多个key落在同一节点
+ * 读操作无锁，增删节点时重建整个环，适合节点很少变化的场景
+ *
+ * @param <T>
+ */
+public class ConsistentHashRing<T> {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+    private volatile Ring<T> ring;
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.virtualNodes = virtualNodes;
+        this.ring = new Ring<>(new LinkedHashMap<>(), virtualNodes);
+    }
+
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * 增加节点，同名节点已存在时替换
+     *
+     * @param name 节点名，决定节点在环上的位置，一般为host:port
+     * @param node
+     */
+    public synchronized void add(String name, T node) {
+        Map<String, T> nodes = new LinkedHashMap<>(ring.nodes);
+        nodes.put(name, node);
+        this.ring = new Ring<>(nodes, virtualNodes);
+    }
+
+    /**
+     * @return 被移除的节点，不存在时返回null
+     */
+    public synchronized T remove(String name) {
+        Map<String, T> nodes = new LinkedHashMap<>(ring.nodes);
+        T removed = nodes.remove(name);
+        if (removed != null) {
+            this.ring = new Ring<>(nodes, virtualNodes);
+        }
+        return removed;
+    }
+
+    /**
+     * 节点名到节点，按加入顺序
+     */
+    public Map<String, T> getNodes() {
+        return Collections.unmodifiableMap(ring.nodes);
+    }
+
+    public List<T> nodes() {
+        return new ArrayList<>(ring.nodes.values());
+    }
+
+    public int size() {
+        return ring.nodes.size();
+    }
+
+    public T get(String key) {
+        return get(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param rawKey UTF-8编码的key
+     * @return key所属的节点
+     */
+    public T get(byte[] rawKey) {
+        Ring<T> current = this.ring;
+        if (current.points.length == 0) {
+            throw new IllegalStateException("No node in hash ring");
+        }
+        return current.get(hash(rawKey));
+    }
+
+    /**
+     * 有hash tag时只对tag计算哈希
+     */
+    static int hash(byte[] rawKey) {
+        int start = indexOf(rawKey, (byte) '{', 0);
+        if (start >= 0) {
+            int end = indexOf(rawKey, (byte) '}', start + 1);
+            if (end > start + 1) {
+                return murmur3(rawKey, start + 1, end - start - 1);
+            }
+        }
+        return murmur3(rawKey, 0, rawKey.length);
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * MurmurHash3 x86_32，seed为0
+     */
+    @SuppressWarnings("fallthrough")
+    static int murmur3(byte[] data, int offset, int length) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h = 0;
+        int end = offset + (length & ~3);
+        for (int i = offset; i < end; i += 4) {
+            int k = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8) | ((data[i + 2] & 0xff) << 16) | (data[i + 3] << 24);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        // 剩余1~3个字节，case依次向下贯穿
+        switch (length & 3) {
+            case 3:
+                k = (data[end + 2] & 0xff) << 16;
+            case 2:
+                k |= (data[end + 1] & 0xff) << 8;
+            case 1:
+                k |= data[end] & 0xff;
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
+            default:
+        }
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 不可变的环：按哈希值排序的虚拟节点，查找时二分
+     */
+    private static class Ring<T> {
+        final Map<String, T> nodes;
+        final int[] points;
+        final Object[] owners;
+
+        Ring(Map<String, T> nodes, int virtualNodes) {
+            this.nodes = nodes;
+            long[] entries = new long[nodes.size() * virtualNodes];
+            List<T> indexed = new ArrayList<>(nodes.values());
+            int n = 0;
+            int nodeIndex = 0;
+            for (String name : nodes.keySet()) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    byte[] point = (name + "#" + i).getBytes(StandardCharsets.UTF_8);
+                    // 高32位为翻转符号位的哈希值（有符号比较即无符号顺序），低32位为节点下标
+                    entries[n++] = ((long) (murmur3(point, 0, point.length) ^ Integer.MIN_VALUE) << 32) | nodeIndex;
+                }
+                nodeIndex++;
+            }
+            Arrays.sort(entries);
+            this.points = new int[entries.length];
+            this.owners = new Object[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = (int) (entries[i] >> 32);
+                owners[i] = indexed.get((int) entries[i]);
+            }
+        }
+
+        /**
+         * 顺时针找到第一个不小于hash的虚拟节点，超过最后一个时回到第一个
+         */
+        @SuppressWarnings("unchecked")
+        T get(int hash) {
+            int key = hash ^ Integer.MIN_VALUE;
+            int index = Arrays.binarySearch(points, key);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == points.length) {
+                    index = 0;
+                }
+            }
+            return (T) owners[index];
+        }
+    }
+}
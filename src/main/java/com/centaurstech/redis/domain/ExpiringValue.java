@@ -0,0 +1,28 @@
+package com.centaurstech.redis.domain;
+
+/**
+ * 对象及其剩余过期时间
+ */
+public class ExpiringValue {
+    private final Object value;
+    private final long ttlMillis;
+
+    public ExpiringValue(Object value, long ttlMillis) {
+        this.value = value;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return key不存在时为null
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return 剩余毫秒数，没有过期时间时为-1，key不存在时为-2
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+}
@@ -0,0 +1,30 @@
+package com.centaurstech.redis.domain;
+
+/**
+ * 热点key及其估算的每个统计窗口内的访问次数
+ */
+public class HotKey {
+    private final String key;
+    private final long estimatedCount;
+
+    public HotKey(String key, long estimatedCount) {
+        this.key = key;
+        this.estimatedCount = estimatedCount;
+    }
+
+    /**
+     * 完整的redis key，即"前缀:key"
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public long getEstimatedCount() {
+        return estimatedCount;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + estimatedCount;
+    }
+}
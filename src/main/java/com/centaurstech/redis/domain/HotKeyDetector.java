@@ -0,0 +1,330 @@
+package com.centaurstech.redis.domain;
+
+import com.centaurstech.redis.interfaces.HotKeyListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 热点key探测，按RedisKey前缀（namespace）分别统计，未开启的namespace不统计
+ * 每个namespace一个Count-Min Sketch，按滑动窗口估算key在一个窗口内的访问次数：
+ * 当前窗口的计数加上按剩余比例折算的上一个窗口的计数，窗口结束时丢弃上一个窗口，频率随之衰减。
+ * 估算值达到阈值的key进入该namespace的热点集合（最多topK个，满了替换最冷的），
+ * 热点key的值可以在本地保留短ttl的副本，降到阈值以下后移出热点集合并删除副本。
+ */
+public class HotKeyDetector {
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyDetector.class);
+
+    public static final int DEFAULT_TOP_K = 32;
+    public static final int DEFAULT_SAMPLE_RATE = 1;
+    public static final long DEFAULT_REPLICA_TTL_MILLIS = 1000L;
+    public static final long DEFAULT_WINDOW_MILLIS = 1000L;
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096;
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+    private final List<HotKeyListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long windowMillis = DEFAULT_WINDOW_MILLIS;
+
+    /**
+     * @param namespace        RedisKey.getKey()
+     * @param threshold        每个窗口内估算访问次数达到该值即为热点
+     * @param replicaTtlMillis 热点key本地副本的存活时间，单位毫秒
+     * @param topK             该namespace最多同时有多少个热点key
+     * @param sampleRate       每sampleRate次访问统计一次，1为全部统计
+     */
+    public void enable(String namespace, long threshold, long replicaTtlMillis, int topK, int sampleRate) {
+        if (threshold <= 0 || topK <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("threshold, topK and sampleRate must be positive");
+        }
+        trackers.put(namespace, new Tracker(namespace, threshold, replicaTtlMillis, topK, sampleRate));
+    }
+
+    public void disable(String namespace) {
+        trackers.remove(namespace);
+    }
+
+    public boolean isEnabled(String namespace) {
+        return trackers.containsKey(namespace);
+    }
+
+    /**
+     * 统计窗口长度，修改后从下一个窗口开始生效
+     */
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void addListener(HotKeyListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @return 该key当前是否为热点
+     */
+    public boolean record(String namespace, String key) {
+        Tracker tracker = trackers.get(namespace);
+        return tracker != null && tracker.record(key);
+    }
+
+    /**
+     * 热点key的本地副本，不存在时返回null
+     */
+    public Object getReplica(String namespace, String key) {
+        Tracker tracker = trackers.get(namespace);
+        return tracker == null ? null : tracker.replicas.get(key);
+    }
+
+    /**
+     * 只保存热点key的副本，null不保存
+     */
+    public void putReplica(String namespace, String key, Object value) {
+        Tracker tracker = trackers.get(namespace);
+        if (tracker != null && value != null && tracker.hot.containsKey(key)) {
+            tracker.replicas.put(key, value);
+        }
+    }
+
+    public void invalidate(String namespace, String key) {
+        Tracker tracker = trackers.get(namespace);
+        if (tracker != null) {
+            tracker.replicas.remove(key);
+        }
+    }
+
+    /**
+     * 不知道namespace时（如收到其他节点的广播），在所有namespace中移除
+     */
+    public void invalidateKeys(Collection<String> keys) {
+        for (Tracker tracker : trackers.values()) {
+            for (String key : keys) {
+                tracker.replicas.remove(key);
+            }
+        }
+    }
+
+    public void invalidateNamespace(String namespace) {
+        Tracker tracker = trackers.get(namespace);
+        if (tracker != null) {
+            tracker.replicas.clear();
+        }
+    }
+
+    /**
+     * 清空所有副本，热点统计保留
+     */
+    public void clearReplicas() {
+        for (Tracker tracker : trackers.values()) {
+            tracker.replicas.clear();
+        }
+    }
+
+    /**
+     * 当前的热点key，按估算访问次数从高到低
+     */
+    public List<HotKey> getHotKeys(String namespace) {
+        Tracker tracker = trackers.get(namespace);
+        if (tracker == null) {
+            return new ArrayList<>();
+        }
+        List<HotKey> hotKeys = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : tracker.hot.entrySet()) {
+            hotKeys.add(new HotKey(entry.getKey(), entry.getValue()));
+        }
+        hotKeys.sort((a, b) -> Long.compare(b.getEstimatedCount(), a.getEstimatedCount()));
+        return hotKeys;
+    }
+
+    /**
+     * 所有开启了探测的namespace的热点key
+     */
+    public Map<String, List<HotKey>> getHotKeys() {
+        Map<String, List<HotKey>> result = new LinkedHashMap<>();
+        for (String namespace : trackers.keySet()) {
+            result.put(namespace, getHotKeys(namespace));
+        }
+        return result;
+    }
+
+    private void notifyHot(String namespace, String key, long estimatedCount) {
+        logger.info("Hot key detected in {}: {} (~{} per {}ms)", namespace, key, estimatedCount, windowMillis);
+        for (HotKeyListener listener : listeners) {
+            try {
+                listener.onHotKey(namespace, key, estimatedCount);
+            } catch (Exception e) {
+                logger.warn("Error in hot key listener", e);
+            }
+        }
+    }
+
+    private void notifyCoolDown(String namespace, String key) {
+        logger.debug("Hot key cooled down in {}: {}", namespace, key);
+        for (HotKeyListener listener : listeners) {
+            try {
+                listener.onCoolDown(namespace, key);
+            } catch (Exception e) {
+                logger.warn("Error in hot key listener", e);
+            }
+        }
+    }
+
+    private static final class Window {
+        final AtomicIntegerArray current;
+        final AtomicIntegerArray previous;
+        final long start;
+
+        Window(AtomicIntegerArray current, AtomicIntegerArray previous, long start) {
+            this.current = current;
+            this.previous = previous;
+            this.start = start;
+        }
+    }
+
+    private final class Tracker {
+        final String namespace;
+        final long threshold;
+        final int topK;
+        final int sampleRate;
+        final AtomicReference<Window> window;
+        /**
+         * 热点key到估算访问次数
+         */
+        final Map<String, Long> hot = new ConcurrentHashMap<>();
+        final ConcurrentTimeBasedCache<Object> replicas;
+
+        Tracker(String namespace, long threshold, long replicaTtlMillis, int topK, int sampleRate) {
+            this.namespace = namespace;
+            this.threshold = threshold;
+            this.topK = topK;
+            this.sampleRate = sampleRate;
+            this.window = new AtomicReference<>(new Window(new AtomicIntegerArray(DEPTH * WIDTH),
+                    new AtomicIntegerArray(DEPTH * WIDTH), System.currentTimeMillis()));
+            this.replicas = new ConcurrentTimeBasedCache<>(replicaTtlMillis, topK);
+        }
+
+        boolean record(String key) {
+            Window current = currentWindow();
+            if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+                int hash = spread(key.hashCode());
+                int count = Integer.MAX_VALUE;
+                for (int i = 0; i < DEPTH; i++) {
+                    count = Math.min(count, current.current.incrementAndGet(indexOf(hash, i)));
+                }
+                long estimate = estimate(current, hash, count);
+                Long previous = hot.get(key);
+                if (previous != null) {
+                    // key可能同时被窗口切换或promote移出，只更新仍在集合中的key；估算不变时不写，避免最热的key每次读取都写map
+                    if (previous != estimate) {
+                        hot.replace(key, previous, estimate);
+                    }
+                } else if (estimate >= threshold) {
+                    promote(key, estimate);
+                }
+            }
+            return hot.containsKey(key);
+        }
+
+        /**
+         * 热点集合满了时替换估算次数最少的key
+         */
+        private void promote(String key, long estimate) {
+            String evicted = null;
+            synchronized (this) {
+                if (hot.containsKey(key)) {
+                    return;
+                }
+                if (hot.size() >= topK) {
+                    long min = Long.MAX_VALUE;
+                    for (Map.Entry<String, Long> entry : hot.entrySet()) {
+                        if (entry.getValue() < min) {
+                            min = entry.getValue();
+                            evicted = entry.getKey();
+                        }
+                    }
+                    if (min >= estimate) {
+                        return;
+                    }
+                    hot.remove(evicted);
+                    replicas.remove(evicted);
+                }
+                hot.put(key, estimate);
+            }
+            if (evicted != null) {
+                notifyCoolDown(namespace, evicted);
+            }
+            notifyHot(namespace, key, estimate);
+        }
+
+        /**
+         * 窗口结束时切换到新窗口，切换成功的线程负责把不再达到阈值的key移出热点集合
+         */
+        private Window currentWindow() {
+            Window current = window.get();
+            long now = System.currentTimeMillis();
+            long elapsed = now - current.start;
+            if (elapsed < windowMillis) {
+                return current;
+            }
+            // 超过两个窗口没有访问时，上一个窗口的计数也已过期
+            AtomicIntegerArray previous = elapsed < 2 * windowMillis ? current.current : new AtomicIntegerArray(DEPTH * WIDTH);
+            Window next = new Window(new AtomicIntegerArray(DEPTH * WIDTH), previous, now);
+            if (!window.compareAndSet(current, next)) {
+                return window.get();
+            }
+            for (Map.Entry<String, Long> entry : hot.entrySet()) {
+                int hash = spread(entry.getKey().hashCode());
+                long estimate = estimate(next, hash, minCount(next.current, hash));
+                if (estimate < threshold) {
+                    if (hot.remove(entry.getKey()) != null) {
+                        replicas.remove(entry.getKey());
+                        notifyCoolDown(namespace, entry.getKey());
+                    }
+                } else {
+                    hot.replace(entry.getKey(), estimate);
+                }
+            }
+            return next;
+        }
+
+        private long estimate(Window current, int hash, int currentCount) {
+            double previousWeight = Math.max(0D, 1D - (System.currentTimeMillis() - current.start) / (double) windowMillis);
+            long count = currentCount + (long) (minCount(current.previous, hash) * previousWeight);
+            return count * sampleRate;
+        }
+    }
+
+    private static int minCount(AtomicIntegerArray counters, int hash) {
+        int count = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            count = Math.min(count, counters.get(indexOf(hash, i)));
+        }
+        return count;
+    }
+
+    private static int indexOf(int hash, int depth) {
+        long h = (hash + SEED[depth]) * SEED[depth];
+        h += h >>> 32;
+        return depth * WIDTH + (((int) h) & (WIDTH - 1));
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,115 @@
+package com.centaurstech.redis.domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图（单位微秒），对数线性分桶：每个2的幂区间再均分为16个桶，相对误差不超过1/16
+ * 计数按线程分散到多组桶中以减少竞争，记录时不分配对象；读取百分位时再合并
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * 2^36微秒约19小时，更大的值计入最后一个桶
+     */
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 8) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    /**
+     * @param micros 延迟，单位微秒
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.incrementAndGet(stripe * BUCKETS + bucketIndex(micros));
+        count.increment();
+        sum.add(micros);
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+                + (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile 0~100，如99.9
+     * @return 对应百分位的延迟（桶的上界，不超过最大值），单位微秒，没有数据时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = counts.get(stripe * BUCKETS + i);
+                merged[i] += n;
+                total += n;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,91 @@
+package com.centaurstech.redis.domain;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内一级缓存，按RedisKey前缀（namespace）分区，每个分区有独立的ttl和容量上限
+ * 未开启的namespace不会被缓存
+ */
+public class NearCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    public void enable(String namespace, long ttlMillis, int maxEntries) {
+        regions.put(namespace, new Region(ttlMillis, maxEntries));
+    }
+
+    public void disable(String namespace) {
+        regions.remove(namespace);
+    }
+
+    public boolean isEnabled(String namespace) {
+        return regions.containsKey(namespace);
+    }
+
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+
+    public Object get(String namespace, String key) {
+        Region region = regions.get(namespace);
+        return region == null ? null : region.get(key);
+    }
+
+    /**
+     * 放入一级缓存，null不缓存
+     */
+    public void put(String namespace, String key, Object value) {
+        Region region = regions.get(namespace);
+        if (region == null) {
+            return;
+        }
+        region.entries.put(key, value);
+    }
+
+    public void invalidate(String namespace, String key) {
+        Region region = regions.get(namespace);
+        if (region != null) {
+            region.entries.remove(key);
+        }
+    }
+
+    /**
+     * 不知道namespace时（如收到其他节点的广播），在所有分区中移除
+     */
+    public void invalidateKeys(Collection<String> keys) {
+        for (Region region : regions.values()) {
+            for (String key : keys) {
+                region.entries.remove(key);
+            }
+        }
+    }
+
+    public void invalidateNamespace(String namespace) {
+        Region region = regions.get(namespace);
+        if (region != null) {
+            region.entries.clear();
+        }
+    }
+
+    public void clear() {
+        for (Region region : regions.values()) {
+            region.entries.clear();
+        }
+    }
+
+    private static class Region {
+        final ConcurrentTimeBasedCache<Object> entries;
+
+        Region(long ttlMillis, int maxEntries) {
+            this.entries = new ConcurrentTimeBasedCache<>(ttlMillis, maxEntries);
+        }
+
+        Object get(String key) {
+            return entries.get(key);
+        }
+    }
+}
@@ -4,6 +4,13 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * 非线程安全，且只在读取时清理过期数据，没有容量上限
+ * 并发场景请使用ConcurrentTimeBasedCache
+ *
+ * @param <Content>
+ */
+@Deprecated
 public class TimeBasedCache<Content> {
 
     public static final long DEFAULT_EXPIRE_IN = 600 * 1000L;
@@ -0,0 +1,13 @@
+package com.centaurstech.redis.interfaces;
+
+import com.centaurstech.redis.domain.CircuitState;
+
+public interface CircuitStateListener {
+    /**
+     * 熔断器状态变化时回调，在触发变化的线程中执行，不要做耗时操作
+     *
+     * @param from 原状态
+     * @param to   新状态
+     */
+    void onStateChange(CircuitState from, CircuitState to);
+}
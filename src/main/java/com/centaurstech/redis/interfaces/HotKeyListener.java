@@ -0,0 +1,19 @@
+package com.centaurstech.redis.interfaces;
+
+public interface HotKeyListener {
+    /**
+     * key成为热点，之后的读取会在本地保留短期副本
+     * 在访问该key的线程中执行，不要做耗时操作
+     *
+     * @param namespace      RedisKey.getKey()
+     * @param key            完整的redis key，即"前缀:key"
+     * @param estimatedCount 估算的每个统计窗口内的访问次数
+     */
+    void onHotKey(String namespace, String key, long estimatedCount);
+
+    /**
+     * key的访问频率降到阈值以下，不再是热点
+     */
+    default void onCoolDown(String namespace, String key) {
+    }
+}
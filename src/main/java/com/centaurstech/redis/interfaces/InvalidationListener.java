@@ -0,0 +1,19 @@
+package com.centaurstech.redis.interfaces;
+
+import java.util.Collection;
+
+public interface InvalidationListener {
+    /**
+     * 其他节点修改或删除了这些key，本地副本需要失效
+     *
+     * @param keys 完整的redis key，即"前缀:key"
+     */
+    void onInvalidateKeys(Collection<String> keys);
+
+    /**
+     * 其他节点删除了整个RedisKey前缀下的数据
+     *
+     * @param namespace RedisKey.getKey()
+     */
+    void onInvalidateNamespace(String namespace);
+}
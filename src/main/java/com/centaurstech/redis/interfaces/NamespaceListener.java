@@ -0,0 +1,10 @@
+package com.centaurstech.redis.interfaces;
+
+public interface NamespaceListener {
+    /**
+     * 第一次出现某个namespace时回调
+     *
+     * @param namespace RedisKey.getKey()
+     */
+    void onNewNamespace(String namespace);
+}
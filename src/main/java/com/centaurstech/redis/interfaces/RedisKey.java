@@ -1,9 +1,21 @@
 package com.centaurstech.redis.interfaces;
 
+import com.centaurstech.redis.domain.CachePolicy;
+
 public interface RedisKey {
     /**
      * 返回description
      * @return
      */
     String getKey();
+
+    /**
+     * 该前缀的缓存策略（默认缓存时间、随机延长比例、一级缓存、编码、压缩），返回null时全部使用默认值
+     * 每个前缀只在第一次使用时读取一次
+     *
+     * @return
+     */
+    default CachePolicy getCachePolicy() {
+        return null;
+    }
 }
@@ -0,0 +1,11 @@
+package com.centaurstech.redis.interfaces;
+
+public interface ScanProgressListener {
+    /**
+     * 每删除一批key后回调
+     *
+     * @param scanned 目前为止SCAN到的key数量
+     * @param deleted 目前为止实际删除的key数量
+     */
+    void onProgress(long scanned, long deleted);
+}
@@ -0,0 +1,32 @@
+package com.centaurstech.redis.interfaces;
+
+/**
+ * value编码器，序列化后的数据以一个字节的编码标识开头，读取时按首字节选择编码器
+ * 标识取值见ValueHeader，不能与JSON可能的首字节冲突，这样旧的JSON数据不带标识也能读出来
+ */
+public interface ValueCodec {
+    /**
+     * 编码标识，写在数据首字节
+     *
+     * @return
+     */
+    byte getId();
+
+    /**
+     * 编码，不包含标识字节
+     *
+     * @param value 不为null
+     * @return
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码，offset处为标识之后的第一个字节
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    Object decode(byte[] bytes, int offset, int length);
+}
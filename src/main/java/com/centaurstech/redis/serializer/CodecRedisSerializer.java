@@ -0,0 +1,101 @@
+package com.centaurstech.redis.serializer;
+
+import com.centaurstech.redis.configuration.CentaursRedisProperties;
+import com.centaurstech.redis.interfaces.ValueCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 按编码标识读写value的序列化器
+ * 写入：writeCodec为null时仍写旧的JSON格式（不带标识），否则写 标识字节+编码内容；
+ * 读取：首字节是已注册的标识时交给对应编码器，否则按旧的JSON格式读取。
+ * 切换编码时先让所有节点升级到能读新格式的版本，再修改写入编码，回退时同理。
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ValueCodec writeCodec;
+    private final RedisSerializer<?> legacySerializer;
+    private final ValueCodec[] readCodecs = new ValueCodec[0x20];
+
+    /**
+     * @param writeCodec       写入使用的编码器，null表示写旧格式
+     * @param legacySerializer 旧的JSON序列化器
+     * @param readCodecs       可以读取的编码器，writeCodec会自动加入
+     */
+    public CodecRedisSerializer(ValueCodec writeCodec, RedisSerializer<?> legacySerializer, ValueCodec... readCodecs) {
+        this.writeCodec = writeCodec;
+        this.legacySerializer = legacySerializer;
+        for (ValueCodec codec : readCodecs) {
+            register(codec);
+        }
+        if (writeCodec != null) {
+            register(writeCodec);
+        }
+    }
+
+    private void register(ValueCodec codec) {
+        byte id = codec.getId();
+        if (!ValueHeader.isValid(id)) {
+            throw new IllegalArgumentException("Invalid codec id: " + id);
+        }
+        if (readCodecs[id] != null && readCodecs[id] != codec) {
+            throw new IllegalArgumentException("Duplicate codec id: " + id);
+        }
+        readCodecs[id] = codec;
+    }
+
+    /**
+     * 读取方式不变、只换写入编码的序列化器
+     *
+     * @param codec json（旧格式）或smile，smile需要已注册为可读取的编码
+     * @return
+     */
+    public CodecRedisSerializer withWriteCodec(String codec) {
+        ValueCodec[] registered = Arrays.stream(readCodecs).filter(Objects::nonNull).toArray(ValueCodec[]::new);
+        if (CentaursRedisProperties.Codec.JSON.equalsIgnoreCase(codec)) {
+            return new CodecRedisSerializer(null, legacySerializer, registered);
+        }
+        if (CentaursRedisProperties.Codec.SMILE.equalsIgnoreCase(codec) && readCodecs[ValueHeader.SMILE] != null) {
+            return new CodecRedisSerializer(readCodecs[ValueHeader.SMILE], legacySerializer, registered);
+        }
+        throw new IllegalArgumentException("Unknown redis value codec: " + codec);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (writeCodec == null) {
+            return ((RedisSerializer<Object>) legacySerializer).serialize(value);
+        }
+        if (value == null) {
+            return EMPTY;
+        }
+        byte[] body = writeCodec.encode(value);
+        byte[] bytes = new byte[body.length + 1];
+        bytes[0] = writeCodec.getId();
+        System.arraycopy(body, 0, bytes, 1, body.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte id = bytes[0];
+        if (id >= 0 && id < readCodecs.length && ValueHeader.isValid(id)) {
+            ValueCodec codec = readCodecs[id];
+            if (codec == null && id == ValueHeader.TYPED_JSON) {
+                throw new SerializationException("Value was written with a known type, read it with getObj(key, Class)");
+            }
+            if (codec == null) {
+                throw new SerializationException("Unknown value codec id: " + id);
+            }
+            return codec.decode(bytes, 1, bytes.length - 1);
+        }
+        return legacySerializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,149 @@
+package com.centaurstech.redis.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 大value压缩
+ * 序列化结果不小于threshold字节时用Deflate压缩，格式为 0x1F+原始长度(4字节)+压缩数据；
+ * 小于阈值或压缩后没有变小的数据原样写入。读取时总是识别压缩数据，threshold为0时只解压不压缩。
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+    private static final int HEADER_LENGTH = 5;
+    /**
+     * redis单个value的上限，超过说明数据已损坏
+     */
+    private static final int MAX_ORIGINAL_LENGTH = 512 * 1024 * 1024;
+
+    private final RedisSerializer<Object> delegate;
+    private final int threshold;
+    private final int level;
+    private final CompressionStatistics statistics = new CompressionStatistics();
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * @param delegate  实际的序列化器
+     * @param threshold 压缩阈值（字节），不大于0时不压缩
+     * @param level     Deflate压缩级别，推荐Deflater.BEST_SPEED
+     */
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int threshold, int level) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.level = level;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int threshold) {
+        this(delegate, threshold, Deflater.BEST_SPEED);
+    }
+
+    public CompressionStatistics getStatistics() {
+        return statistics;
+    }
+
+    public RedisSerializer<Object> getDelegate() {
+        return delegate;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        return compress(delegate.serialize(value));
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        return delegate.deserialize(decompress(bytes));
+    }
+
+    /**
+     * 按阈值压缩已经序列化好的数据，供不经过delegate的写入路径使用
+     *
+     * @param raw
+     * @return 不需要压缩时原样返回
+     */
+    public byte[] compress(byte[] raw) {
+        if (raw == null || raw.length == 0) {
+            return raw;
+        }
+        if (threshold <= 0 || raw.length < threshold) {
+            statistics.recordSkipped(raw.length);
+            SerializedBytes.addWritten(raw.length);
+            return raw;
+        }
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        // 输出不能超过原始大小，写不下说明压缩没有意义
+        byte[] out = new byte[raw.length];
+        int length = HEADER_LENGTH;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        if (!deflater.finished()) {
+            statistics.recordIncompressible(raw.length);
+            SerializedBytes.addWritten(raw.length);
+            return raw;
+        }
+        out[0] = ValueHeader.DEFLATE;
+        out[1] = (byte) (raw.length >>> 24);
+        out[2] = (byte) (raw.length >>> 16);
+        out[3] = (byte) (raw.length >>> 8);
+        out[4] = (byte) raw.length;
+        statistics.recordCompressed(raw.length, length);
+        SerializedBytes.addWritten(length);
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * @param bytes
+     * @return 不是压缩数据时原样返回
+     */
+    public byte[] decompress(byte[] bytes) {
+        if (bytes != null) {
+            SerializedBytes.addRead(bytes.length);
+        }
+        if (bytes == null || bytes.length < HEADER_LENGTH || bytes[0] != ValueHeader.DEFLATE) {
+            return bytes;
+        }
+        int originalLength = (bytes[1] & 0xFF) << 24 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 8 | (bytes[4] & 0xFF);
+        if (originalLength < 0 || originalLength > MAX_ORIGINAL_LENGTH) {
+            throw new SerializationException("Invalid compressed value length: " + originalLength);
+        }
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        byte[] raw = new byte[originalLength];
+        int length = 0;
+        try {
+            while (length < originalLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, originalLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Could not decompress value: " + e.getMessage(), e);
+        }
+        if (length != originalLength) {
+            throw new SerializationException("Truncated compressed value");
+        }
+        statistics.recordDecompressed();
+        return raw;
+    }
+}
@@ -0,0 +1,98 @@
+package com.centaurstech.redis.serializer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压缩统计，用于调整压缩阈值
+ */
+public class CompressionStatistics {
+    private final LongAdder compressedCount = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder skippedBytes = new LongAdder();
+    private final LongAdder incompressibleCount = new LongAdder();
+    private final LongAdder incompressibleBytes = new LongAdder();
+    private final LongAdder decompressedCount = new LongAdder();
+
+    void recordCompressed(int original, int compressed) {
+        compressedCount.increment();
+        originalBytes.add(original);
+        compressedBytes.add(compressed);
+    }
+
+    void recordSkipped(int size) {
+        skippedCount.increment();
+        skippedBytes.add(size);
+    }
+
+    void recordIncompressible(int size) {
+        incompressibleCount.increment();
+        incompressibleBytes.add(size);
+    }
+
+    void recordDecompressed() {
+        decompressedCount.increment();
+    }
+
+    /**
+     * 压缩后大小/压缩前大小，只统计实际压缩了的数据，没有数据时返回1
+     */
+    public double getRatio() {
+        long original = originalBytes.sum();
+        return original == 0 ? 1.0 : (double) compressedBytes.sum() / original;
+    }
+
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * 小于阈值、没有压缩的写入次数
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    public long getSkippedBytes() {
+        return skippedBytes.sum();
+    }
+
+    /**
+     * 超过阈值但压缩后没有变小、按原样写入的次数
+     */
+    public long getIncompressibleCount() {
+        return incompressibleCount.sum();
+    }
+
+    public long getIncompressibleBytes() {
+        return incompressibleBytes.sum();
+    }
+
+    public long getDecompressedCount() {
+        return decompressedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStatistics{" +
+                "compressed=" + getCompressedCount() +
+                ", originalBytes=" + getOriginalBytes() +
+                ", compressedBytes=" + getCompressedBytes() +
+                ", ratio=" + String.format("%.3f", getRatio()) +
+                ", skipped=" + getSkippedCount() +
+                ", skippedBytes=" + getSkippedBytes() +
+                ", incompressible=" + getIncompressibleCount() +
+                ", incompressibleBytes=" + getIncompressibleBytes() +
+                ", decompressed=" + getDecompressedCount() +
+                '}';
+    }
+}
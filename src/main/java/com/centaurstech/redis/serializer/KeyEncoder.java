@@ -0,0 +1,93 @@
+package com.centaurstech.redis.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把"前缀:key"直接编码为UTF-8字节，结果与StringRedisSerializer序列化同一个字符串完全相同
+ * 每个namespace的"前缀:"（代数模式下为"前缀:g代数:"）只编码一次并缓存，
+ * 拼接在线程内复用的缓冲区中完成，只分配最终的byte[]，不生成中间的String
+ */
+public class KeyEncoder {
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
+    private final Map<String, byte[]> prefixes = new ConcurrentHashMap<>();
+    private final Map<String, GenerationPrefix> generationPrefixes = new ConcurrentHashMap<>();
+
+    /**
+     * @return "namespace:key"的UTF-8字节
+     */
+    public byte[] encode(String namespace, String key) {
+        byte[] prefix = prefixes.get(namespace);
+        if (prefix == null) {
+            prefix = (namespace + ":").getBytes(StandardCharsets.UTF_8);
+            prefixes.put(namespace, prefix);
+        }
+        return encode(prefix, key);
+    }
+
+    /**
+     * @return "namespace:g代数:key"的UTF-8字节
+     */
+    public byte[] encode(String namespace, long generation, String key) {
+        GenerationPrefix prefix = generationPrefixes.get(namespace);
+        if (prefix == null || prefix.generation != generation) {
+            prefix = new GenerationPrefix(generation, (namespace + ":g" + generation + ":").getBytes(StandardCharsets.UTF_8));
+            generationPrefixes.put(namespace, prefix);
+        }
+        return encode(prefix.bytes, key);
+    }
+
+    private static byte[] encode(byte[] prefix, String key) {
+        // UTF-8中每个char最多编码为3个字节（代理对两个char共4个字节）
+        int maxLength = prefix.length + key.length() * 3;
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < maxLength) {
+            buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+            BUFFER.set(buffer);
+        }
+        System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+        int length = writeUtf8(key, buffer, prefix.length);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static int writeUtf8(String value, byte[] buffer, int position) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符与String.getBytes一样替换为'?'
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return position;
+    }
+
+    private static final class GenerationPrefix {
+        final long generation;
+        final byte[] bytes;
+
+        GenerationPrefix(long generation, byte[] bytes) {
+            this.generation = generation;
+            this.bytes = bytes;
+        }
+    }
+}
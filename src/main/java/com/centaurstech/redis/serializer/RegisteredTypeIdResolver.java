@@ -0,0 +1,60 @@
+package com.centaurstech.redis.serializer;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.jsontype.impl.ClassNameIdResolver;
+import com.fasterxml.jackson.databind.jsontype.impl.TypeIdResolverBase;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 注册过的类使用编号作为类型标识，其余的交给jackson默认的类名方式处理
+ */
+class RegisteredTypeIdResolver extends TypeIdResolverBase {
+    private final TypeIdRegistry registry;
+    private final ClassNameIdResolver classNames;
+
+    RegisteredTypeIdResolver(TypeIdRegistry registry, TypeFactory typeFactory) {
+        super(typeFactory.constructType(Object.class), typeFactory);
+        this.registry = registry;
+        this.classNames = new ClassNameIdResolver(_baseType, typeFactory);
+    }
+
+    @Override
+    public String idFromValue(Object value) {
+        return idFromValueAndType(value, value.getClass());
+    }
+
+    @Override
+    public String idFromValueAndType(Object value, Class<?> suggestedType) {
+        String id = registry.idOf(suggestedType);
+        return id != null ? id : classNames.idFromValueAndType(value, suggestedType);
+    }
+
+    @Override
+    public JavaType typeFromId(DatabindContext context, String id) {
+        Class<?> cls = registry.classOf(id);
+        if (cls != null) {
+            return context.constructType(cls);
+        }
+        try {
+            return classNames.typeFromId(context, id);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // jackson 2.8起typeFromId声明抛出IOException（如未知的类型标识），2.7不抛出，这里统一转为非受检异常
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public JsonTypeInfo.Id getMechanism() {
+        return JsonTypeInfo.Id.CUSTOM;
+    }
+}
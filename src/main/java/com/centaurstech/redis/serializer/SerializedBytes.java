@@ -0,0 +1,37 @@
+package com.centaurstech.redis.serializer;
+
+/**
+ * 按线程累计序列化器读写的字节数，调用方在请求前后各取一次差值即为本次请求的字节数
+ * 只统计在调用线程中完成的（反）序列化，异步接口在驱动线程中反序列化的部分不计入
+ */
+public final class SerializedBytes {
+    private static final ThreadLocal<Counter> COUNTERS = ThreadLocal.withInitial(Counter::new);
+
+    private SerializedBytes() {
+    }
+
+    public static Counter current() {
+        return COUNTERS.get();
+    }
+
+    public static final class Counter {
+        private long read;
+        private long written;
+
+        public long getRead() {
+            return read;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+    }
+
+    static void addRead(int bytes) {
+        COUNTERS.get().read += bytes;
+    }
+
+    static void addWritten(int bytes) {
+        COUNTERS.get().written += bytes;
+    }
+}
@@ -0,0 +1,56 @@
+package com.centaurstech.redis.serializer;
+
+import com.centaurstech.redis.interfaces.ValueCodec;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.TypeResolverBuilder;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Jackson Smile二进制编码，字段可见性和类型信息的规则与原来的JSON序列化一致，
+ * 类型标识使用TypeIdRegistry中注册的编号
+ */
+public class SmileValueCodec implements ValueCodec {
+    private final ObjectMapper mapper;
+
+    public SmileValueCodec(TypeIdRegistry registry) {
+        ObjectMapper om = new ObjectMapper(new SmileFactory()).registerModule(new ParameterNamesModule())
+                .registerModule(new Jdk8Module())
+                .registerModule(new JavaTimeModule());
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        TypeResolverBuilder<?> typer = new ObjectMapper.DefaultTypeResolverBuilder(ObjectMapper.DefaultTyping.NON_FINAL)
+                .init(JsonTypeInfo.Id.CUSTOM, new RegisteredTypeIdResolver(registry, om.getTypeFactory()))
+                .inclusion(JsonTypeInfo.As.WRAPPER_ARRAY);
+        om.setDefaultTyping(typer);
+        this.mapper = om;
+    }
+
+    @Override
+    public byte getId() {
+        return ValueHeader.SMILE;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not write Smile: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) {
+        try {
+            return mapper.readValue(bytes, offset, length, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("Could not read Smile: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.centaurstech.redis.serializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型编号注册表，注册过的类序列化时用短编号代替类的全名
+ * 编号一经使用就不能再改，所有节点的注册内容需要一致；未注册的类仍然写类的全名
+ */
+public class TypeIdRegistry {
+    private final Map<Integer, Class<?>> classes = new ConcurrentHashMap<>();
+    private final Map<Class<?>, String> ids = new ConcurrentHashMap<>();
+
+    /**
+     * @param id  非负整数
+     * @param cls
+     * @return
+     */
+    public synchronized TypeIdRegistry register(int id, Class<?> cls) {
+        if (id < 0) {
+            throw new IllegalArgumentException("type id must not be negative: " + id);
+        }
+        Class<?> existing = classes.get(id);
+        if (existing != null && existing != cls) {
+            throw new IllegalArgumentException("type id " + id + " already registered for " + existing.getName());
+        }
+        String existingId = ids.get(cls);
+        if (existingId != null && !existingId.equals(String.valueOf(id))) {
+            throw new IllegalArgumentException(cls.getName() + " already registered as type id " + existingId);
+        }
+        classes.put(id, cls);
+        ids.put(cls, String.valueOf(id));
+        return this;
+    }
+
+    /**
+     * 按类名注册，用于配置文件
+     */
+    public TypeIdRegistry register(int id, String className) {
+        try {
+            return register(id, Class.forName(className, true, Thread.currentThread().getContextClassLoader()));
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown class for type id " + id + ": " + className, e);
+        }
+    }
+
+    /**
+     * @return 未注册时返回null
+     */
+    public String idOf(Class<?> cls) {
+        return ids.get(cls);
+    }
+
+    /**
+     * @param id 只由数字组成，类名不可能是这种形式
+     * @return 不是编号或未注册时返回null
+     */
+    public Class<?> classOf(String id) {
+        if (id.isEmpty() || id.length() > 9) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return null;
+            }
+        }
+        return classes.get(Integer.parseInt(id));
+    }
+}
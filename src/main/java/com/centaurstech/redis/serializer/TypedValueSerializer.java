@@ -0,0 +1,75 @@
+package com.centaurstech.redis.serializer;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按已知类型读写value：不写入@class等类型信息，读取时直接反序列化为指定类型，每个类型的reader/writer会被缓存
+ * 格式为 TYPED_JSON标识+JSON。适合字段类型都是具体类的对象，字段声明为接口或Object时子类信息会丢失。
+ */
+public class TypedValueSerializer {
+    private final ObjectMapper mapper;
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public TypedValueSerializer() {
+        this(new ObjectMapper().registerModule(new ParameterNamesModule())
+                .registerModule(new Jdk8Module())
+                .registerModule(new JavaTimeModule())
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+    }
+
+    /**
+     * @param mapper 不能开启default typing
+     */
+    public TypedValueSerializer(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * 按value的实际类型序列化
+     *
+     * @param value 不为null
+     * @return
+     */
+    public byte[] serialize(Object value) {
+        ObjectWriter writer = writers.computeIfAbsent(value.getClass(), mapper::writerFor);
+        try {
+            byte[] body = writer.writeValueAsBytes(value);
+            byte[] bytes = new byte[body.length + 1];
+            bytes[0] = ValueHeader.TYPED_JSON;
+            System.arraycopy(body, 0, bytes, 1, body.length);
+            return bytes;
+        } catch (Exception e) {
+            throw new SerializationException("Could not write typed JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 是否是serialize写入的数据（已解压）
+     */
+    public boolean isTyped(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == ValueHeader.TYPED_JSON;
+    }
+
+    public <T> T deserialize(byte[] bytes, Class<T> type) {
+        ObjectReader reader = readers.computeIfAbsent(type, mapper::readerFor);
+        try {
+            return reader.readValue(bytes, 1, bytes.length - 1);
+        } catch (Exception e) {
+            throw new SerializationException("Could not read typed JSON as " + type.getName() + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.centaurstech.redis.serializer;
+
+/**
+ * value首字节的编码标识
+ * 只使用JSON不可能出现的首字节（0x01~0x1F中除去\t \n \r），不带标识的数据一律按旧的JSON格式读取
+ * 0x1F保留给压缩，压缩数据解压后再按首字节选择编码
+ */
+public final class ValueHeader {
+    public static final byte SMILE = 0x01;
+    /**
+     * 按已知类型写入的JSON，不带类型信息，只能通过指定类型的方法读取
+     */
+    public static final byte TYPED_JSON = 0x02;
+    public static final byte DEFLATE = 0x1F;
+
+    private ValueHeader() {
+    }
+
+    /**
+     * 是否可以作为编码器的标识
+     */
+    public static boolean isValid(byte id) {
+        return id >= 0x01 && id < DEFLATE && id != '\t' && id != '\n' && id != '\r';
+    }
+}
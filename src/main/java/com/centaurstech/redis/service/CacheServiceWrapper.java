@@ -1,33 +1,638 @@
 package com.centaurstech.redis.service;
 
-import com.centaurstech.redis.domain.TimeBasedCache;
+import com.centaurstech.redis.domain.BackendMetrics;
+import com.centaurstech.redis.domain.CacheBackend;
+import com.centaurstech.redis.domain.CacheMetrics;
+import com.centaurstech.redis.domain.CachePolicy;
+import com.centaurstech.redis.domain.CircuitState;
+import com.centaurstech.redis.domain.ConcurrentTimeBasedCache;
+import com.centaurstech.redis.domain.ExpiringValue;
+import com.centaurstech.redis.domain.HotKey;
+import com.centaurstech.redis.domain.HotKeyDetector;
+import com.centaurstech.redis.domain.NearCache;
+import com.centaurstech.redis.interfaces.CircuitStateListener;
+import com.centaurstech.redis.interfaces.InvalidationListener;
 import com.centaurstech.redis.interfaces.RedisKey;
+import com.centaurstech.redis.interfaces.ScanProgressListener;
+import com.centaurstech.redis.serializer.KeyEncoder;
+import com.centaurstech.redis.serializer.SerializedBytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public abstract class CacheServiceWrapper {
     private static final Logger logger = LoggerFactory.getLogger(CacheServiceWrapper.class);
     private RedisService redisService;
-    private TimeBasedCache<Object> cacheContainer;
-    private boolean redisWorking = true;
+    private final ConcurrentTimeBasedCache<Object> cacheContainer;
+    private final RedisCircuitBreaker circuitBreaker;
     private static Long DEFAULT_TIME_OUT = 24 * 3600 * 1000L;//默认缓存为一天
+    private static long DEFAULT_MAX_LOCAL_ENTRIES = 100000L;//内存模式下最多缓存的条数
+    private static final String GENERATION_KEY_PREFIX = "generation:";
+    private final NearCache nearCache = new NearCache();
+    private final HotKeyDetector hotKeys = new HotKeyDetector();
+    private final KeyEncoder keyEncoder;
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+    private final Map<String, CachePolicy> policies = new ConcurrentHashMap<>();
+    private long generationRefreshMillis = 1000L;
+    private InvalidationBus invalidationBus;
+    private static final String LOAD_LOCK_SUFFIX = ":load-lock";
+    private static final long LOAD_LOCK_POLL_MILLIS = 50L;
+    private final Map<String, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+    private final Map<String, Long> loadLocks = new ConcurrentHashMap<>();
+    private final CacheMetrics metrics = new CacheMetrics();
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+    /**
+     * 本地一级缓存或热点副本命中时，按该比例到redis查询剩余过期时间判断是否提前刷新
+     */
+    private static final double REFRESH_AHEAD_LOCAL_SAMPLE_RATE = 0.05;
+    private final Map<String, Double> refreshAheadBetas = new ConcurrentHashMap<>();
+    private final ConcurrentTimeBasedCache<Long> loadCosts = new ConcurrentTimeBasedCache<>(DEFAULT_TIME_OUT, DEFAULT_MAX_LOCAL_ENTRIES);
+    private final Map<String, Long> lastLoadCosts = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor refreshExecutor;
 
     public CacheServiceWrapper(RedisService redisService) {
         this.redisService = redisService;
+        //redis不可用时数据放在内存中，redis恢复后内存中的数据不会同步回redis
+        this.cacheContainer = new ConcurrentTimeBasedCache<>(DEFAULT_TIME_OUT, DEFAULT_MAX_LOCAL_ENTRIES);
+        this.circuitBreaker = new RedisCircuitBreaker(redisService::ping);
+        this.keyEncoder = redisService.isUtf8KeySerializer() ? new KeyEncoder() : null;
         try {
             this.redisService.setObj("testForConnection", 100000L, "ttc");
-        } catch (Exception e) {
-            this.redisWorking = false;
-            cacheContainer = new TimeBasedCache<>(DEFAULT_TIME_OUT);
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isConnectionFailure(e)) {
+                // 命令错误（如连到了只读的从节点）不代表redis不可用，仍然访问redis
+                logger.warn("Redis connection test failed: {}", e.getMessage());
+            } else {
+                logger.warn("Redis is not available, use memory instead: {}", e.getMessage());
+                this.circuitBreaker.trip();
+            }
+        }
+        this.circuitBreaker.addListener(this::onCircuitStateChange);
+        this.circuitBreaker.start();
+    }
+
+    /**
+     * 当前redis熔断器状态，CLOSED时访问redis，其他状态使用内存
+     */
+    public CircuitState getCircuitState() {
+        return this.circuitBreaker.getState();
+    }
+
+    /**
+     * 获取熔断器，用于调整失败阈值、探测超时时间或监听状态变化
+     */
+    public RedisCircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * 按namespace和存储统计的请求数、命中、错误、字节数和延迟
+     */
+    public CacheMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public void addCircuitStateListener(CircuitStateListener listener) {
+        this.circuitBreaker.addListener(listener);
+    }
+
+    private void onCircuitStateChange(CircuitState from, CircuitState to) {
+        if (to == CircuitState.CLOSED) {
+            // 内存中的数据不会同步回redis，切回redis时丢弃，避免这次故障期间写入的数据在下一次故障时被当作有效数据读出；
+            // 故障期间探测引起的OPEN和HALF_OPEN之间的切换不能清空
+            this.cacheContainer.clear();
+            // redis故障期间可能错过了其他节点的失效广播
+            this.nearCache.clear();
+            this.hotKeys.clearReplicas();
+            for (Map.Entry<String, Generation> entry : this.generations.entrySet()) {
+                entry.setValue(new Generation(entry.getValue().value, 0L));
+            }
+        }
+        if (from == CircuitState.CLOSED || to == CircuitState.CLOSED) {
+            logger.info("Redis circuit state changed from {} to {}", from, to);
+        }
+    }
+
+    /**
+     * 熔断器关闭时访问redis，redis连接失败或熔断器打开时使用内存
+     * 同时按namespace和实际使用的存储记录请求数、错误、字节数和延迟
+     *
+     * @param redisKey  用于统计的RedisKey
+     * @param redisCall redis中的操作
+     * @param localCall 内存中的操作
+     */
+    private <R> R execute(RedisKey redisKey, Supplier<R> redisCall, Supplier<R> localCall) {
+        policy(redisKey);
+        return execute(redisKey.getKey(), false, redisCall, localCall);
+    }
+
+    /**
+     * 同execute，另外按结果是否为null记录命中或未命中
+     */
+    private <R> R lookup(RedisKey redisKey, Supplier<R> redisCall, Supplier<R> localCall) {
+        policy(redisKey);
+        return execute(redisKey.getKey(), true, redisCall, localCall);
+    }
+
+    private <R> R execute(String namespace, boolean lookup, Supplier<R> redisCall, Supplier<R> localCall) {
+        if (this.circuitBreaker.allowRequest()) {
+            BackendMetrics redis = this.metrics.get(namespace, CacheBackend.REDIS);
+            SerializedBytes.Counter bytes = SerializedBytes.current();
+            long bytesRead = bytes.getRead();
+            long bytesWritten = bytes.getWritten();
+            long start = System.nanoTime();
+            try {
+                R result = redisCall.get();
+                this.circuitBreaker.onSuccess();
+                redis.recordRequest(System.nanoTime() - start, bytes.getRead() - bytesRead, bytes.getWritten() - bytesWritten);
+                if (lookup) {
+                    redis.recordLookup(result != null);
+                }
+                return result;
+            } catch (RuntimeException e) {
+                redis.recordError(System.nanoTime() - start);
+                if (!RedisCircuitBreaker.isConnectionFailure(e)) {
+                    throw e;
+                }
+                this.circuitBreaker.onFailure(e);
+                logger.warn("Redis call failed, use memory instead: {}", e.getMessage());
+            }
+        }
+        BackendMetrics memory = this.metrics.get(namespace, CacheBackend.MEMORY);
+        long start = System.nanoTime();
+        R result = localCall.get();
+        memory.recordRequest(System.nanoTime() - start, 0, 0);
+        if (lookup) {
+            memory.recordLookup(result != null);
         }
+        return result;
+    }
+
+    /**
+     * execute的异步版本：熔断打开时立即以内存结果完成，redis调用因连接问题失败时同样改用内存结果
+     * 延迟统计到future完成为止，字节数不统计
+     */
+    private <R> CompletableFuture<R> executeAsync(RedisKey redisKey, Supplier<CompletableFuture<R>> redisCall, Supplier<R> localCall) {
+        return executeAsync(redisKey, false, redisCall, localCall);
+    }
+
+    private <R> CompletableFuture<R> lookupAsync(RedisKey redisKey, Supplier<CompletableFuture<R>> redisCall, Supplier<R> localCall) {
+        return executeAsync(redisKey, true, redisCall, localCall);
+    }
+
+    private <R> CompletableFuture<R> executeAsync(RedisKey redisKey, boolean lookup,
+                                                  Supplier<CompletableFuture<R>> redisCall, Supplier<R> localCall) {
+        policy(redisKey);
+        String namespace = redisKey.getKey();
+        if (!this.circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(execute(namespace, lookup, () -> null, localCall));
+        }
+        BackendMetrics redis = this.metrics.get(namespace, CacheBackend.REDIS);
+        long start = System.nanoTime();
+        CompletableFuture<R> future;
+        try {
+            future = redisCall.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        CompletableFuture<R> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                this.circuitBreaker.onSuccess();
+                redis.recordRequest(System.nanoTime() - start, 0, 0);
+                if (lookup) {
+                    redis.recordLookup(value != null);
+                }
+                result.complete(value);
+                return;
+            }
+            redis.recordError(System.nanoTime() - start);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!RedisCircuitBreaker.isConnectionFailure(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            this.circuitBreaker.onFailure(cause);
+            logger.warn("Redis call failed, use memory instead: {}", cause.getMessage());
+            BackendMetrics memory = this.metrics.get(namespace, CacheBackend.MEMORY);
+            long localStart = System.nanoTime();
+            try {
+                R local = localCall.get();
+                memory.recordRequest(System.nanoTime() - localStart, 0, 0);
+                if (lookup) {
+                    memory.recordLookup(local != null);
+                }
+                result.complete(local);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private void run(RedisKey redisKey, Runnable redisCall, Runnable localCall) {
+        execute(redisKey, () -> {
+            redisCall.run();
+            return null;
+        }, () -> {
+            localCall.run();
+            return null;
+        });
     }
 
-    private String generateKey(RedisKey table, String key) {
+    String generateKey(RedisKey table, String key) {
         //全部以"类名:key"作为唯一键 ，所以key要保证唯一，类名相当于表名
-        return new StringBuffer(table.getKey()).append(":").append(key).toString();
+        String namespace = table.getKey();
+        if (!this.generations.isEmpty()) {
+            Generation generation = this.generations.get(namespace);
+            if (generation != null) {
+                //开启了代数的RedisKey以"类名:g代数:key"作为唯一键
+                return new StringBuilder(namespace.length() + key.length() + 24).append(namespace).append(":g")
+                        .append(currentGeneration(namespace, generation)).append(':').append(key).toString();
+            }
+        }
+        return new StringBuilder(namespace.length() + 1 + key.length()).append(namespace).append(':').append(key).toString();
+    }
+
+    /**
+     * 与generateKey相同的key，直接编码为redis使用的字节，不生成中间的String
+     * 以下情况返回null，由调用方使用String key：key序列化器不是UTF-8、熔断器打开（将使用内存）、
+     * 该RedisKey开启了一级缓存或热点探测（本地副本以String key保存）
+     */
+    byte[] encodeKey(RedisKey table, String key) {
+        if (this.keyEncoder == null || !this.circuitBreaker.allowRequest()) {
+            return null;
+        }
+        // 先读取缓存策略，策略中的一级缓存需要在判断前开启
+        policy(table);
+        String namespace = table.getKey();
+        if (this.nearCache.isEnabled(namespace) || this.hotKeys.isEnabled(namespace)) {
+            return null;
+        }
+        if (!this.generations.isEmpty()) {
+            Generation generation = this.generations.get(namespace);
+            if (generation != null) {
+                return this.keyEncoder.encode(namespace, currentGeneration(namespace, generation), key);
+            }
+        }
+        return this.keyEncoder.encode(namespace, key);
+    }
+
+    /**
+     * 为指定RedisKey开启代数模式：key中带上该前缀的代数，代数保存在redis中并在本地缓存，
+     * delAllKey时只需把代数加一（一次INCR），旧代数的数据不再被访问，依靠过期时间自然淘汰。
+     * 因此该RedisKey下的数据都应设置过期时间，不要使用setObjWithoutTimeout。
+     * 其他节点通过pub/sub得知代数变化，广播丢失时最多在generationRefreshMillis后读到新代数。
+     * 开启前已写入的数据（不带代数）将不再可见。
+     *
+     * @param redisKey
+     */
+    public void enableGeneration(RedisKey redisKey) {
+        startInvalidationBus();
+        this.generations.putIfAbsent(redisKey.getKey(), new Generation(0L, 0L));
+    }
+
+    /**
+     * 设置本地缓存的代数多久从redis刷新一次，单位毫秒
+     *
+     * @param generationRefreshMillis
+     */
+    public void setGenerationRefreshMillis(long generationRefreshMillis) {
+        this.generationRefreshMillis = generationRefreshMillis;
+    }
+
+    private long currentGeneration(String namespace, Generation generation) {
+        long now = System.currentTimeMillis();
+        if (now - generation.loadedAt < this.generationRefreshMillis) {
+            return generation.value;
+        }
+        long value = execute(namespace, false, () -> this.redisService.primary().getCounter(GENERATION_KEY_PREFIX + namespace),
+                () -> generation.value);
+        this.generations.put(namespace, new Generation(value, now));
+        return value;
+    }
+
+    /**
+     * 代数加一，返回新的代数
+     */
+    private long incrementGeneration(String namespace) {
+        long value = execute(namespace, false, () -> {
+            long incremented = this.redisService.incrementCounter(GENERATION_KEY_PREFIX + namespace);
+            this.invalidationBus.publishNamespace(namespace);
+            return incremented;
+        }, () -> this.generations.get(namespace).value + 1);
+        this.generations.put(namespace, new Generation(value, System.currentTimeMillis()));
+        return value;
+    }
+
+    private static class Generation {
+        final long value;
+        final long loadedAt;
+
+        Generation(long value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * 为指定RedisKey开启本地一级缓存，读命中时不再访问redis
+     * 本节点的setObj/delKey/delAllKey会通过redis pub/sub通知其他节点失效，
+     * 广播丢失时本地副本最多在ttl后过期，所以同一RedisKey需要在所有节点上一致开启
+     *
+     * @param redisKey   需要本地缓存的RedisKey，适合读多写少的小对象
+     * @param ttlMillis  本地副本的最长存活时间，单位毫秒
+     * @param maxEntries 本地副本的最大条数
+     */
+    public void enableNearCache(RedisKey redisKey, long ttlMillis, int maxEntries) {
+        startInvalidationBus();
+        this.nearCache.enable(redisKey.getKey(), ttlMillis, maxEntries);
+    }
+
+    public void enableNearCache(RedisKey redisKey, long ttlMillis) {
+        enableNearCache(redisKey, ttlMillis, NearCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * RedisKey声明的缓存策略，第一次使用该前缀时读取，声明了一级缓存时自动开启
+     */
+    CachePolicy policy(RedisKey redisKey) {
+        String namespace = redisKey.getKey();
+        CachePolicy policy = this.policies.get(namespace);
+        if (policy != null) {
+            return policy;
+        }
+        policy = redisKey.getCachePolicy();
+        if (policy == null) {
+            policy = CachePolicy.defaults();
+        }
+        CachePolicy existing = this.policies.putIfAbsent(namespace, policy);
+        if (existing != null) {
+            return existing;
+        }
+        if (policy.getNearCacheTtlMillis() > 0 && !this.nearCache.isEnabled(namespace)) {
+            enableNearCache(redisKey, policy.getNearCacheTtlMillis(), policy.getMaxLocalEntries());
+        }
+        return policy;
+    }
+
+    /**
+     * 实际写入的缓存时间：调用时指定的优先，其次是缓存策略的ttl，最后是默认值，再按策略加上随机延长
+     */
+    private long timeoutFor(RedisKey redisKey, Long timeout) {
+        CachePolicy policy = policy(redisKey);
+        long currentTimeout = timeout != null ? timeout
+                : policy.getTtlMillis() != null ? policy.getTtlMillis() : DEFAULT_TIME_OUT;
+        return policy.applyJitter(currentTimeout);
+    }
+
+    private RedisSerializer<Object> valueSerializer(RedisKey redisKey) {
+        return this.redisService.valueSerializer(policy(redisKey));
+    }
+
+    public void disableNearCache(RedisKey redisKey) {
+        this.nearCache.disable(redisKey.getKey());
+    }
+
+    /**
+     * 为指定RedisKey开启热点key探测：按抽样统计每个key的访问频率，
+     * 每个统计窗口（默认1秒）内访问达到threshold的key成为热点，之后的读取在本地保留replicaTtlMillis的副本，不再访问redis；
+     * 本节点的写入会使副本失效并通知其他节点，广播丢失时副本最多在replicaTtlMillis后过期，
+     * 所以同一RedisKey需要在所有节点上一致开启
+     *
+     * @param redisKey         需要探测的RedisKey
+     * @param threshold        每个统计窗口内估算访问次数达到该值即为热点
+     * @param replicaTtlMillis 热点key本地副本的存活时间，单位毫秒
+     * @param topK             最多同时有多少个热点key
+     * @param sampleRate       每sampleRate次访问统计一次，1为全部统计
+     */
+    public void enableHotKeyDetection(RedisKey redisKey, long threshold, long replicaTtlMillis, int topK, int sampleRate) {
+        startInvalidationBus();
+        this.hotKeys.enable(redisKey.getKey(), threshold, replicaTtlMillis, topK, sampleRate);
+    }
+
+    public void enableHotKeyDetection(RedisKey redisKey, long threshold) {
+        enableHotKeyDetection(redisKey, threshold, HotKeyDetector.DEFAULT_REPLICA_TTL_MILLIS,
+                HotKeyDetector.DEFAULT_TOP_K, HotKeyDetector.DEFAULT_SAMPLE_RATE);
+    }
+
+    public void disableHotKeyDetection(RedisKey redisKey) {
+        this.hotKeys.disable(redisKey.getKey());
+    }
+
+    /**
+     * 指定RedisKey当前的热点key，按访问频率从高到低
+     */
+    public List<HotKey> getHotKeys(RedisKey redisKey) {
+        return this.hotKeys.getHotKeys(redisKey.getKey());
+    }
+
+    /**
+     * 获取热点探测器，用于查看所有namespace的热点、调整统计窗口或监听热点变化
+     */
+    public HotKeyDetector getHotKeyDetector() {
+        return this.hotKeys;
+    }
+
+    /**
+     * 为指定RedisKey开启集群范围的加载锁：getOrLoad未命中时先在redis中加锁（SET NX PX），
+     * 只有加锁成功的节点执行loader，其他节点等待其写入结果，最多等待lockMillis后自行加载
+     *
+     * @param redisKey
+     * @param lockMillis 锁的过期时间，应大于loader的正常耗时，单位毫秒
+     */
+    public void enableLoadLock(RedisKey redisKey, long lockMillis) {
+        this.loadLocks.put(redisKey.getKey(), lockMillis);
+    }
+
+    public void disableLoadLock(RedisKey redisKey) {
+        this.loadLocks.remove(redisKey.getKey());
+    }
+
+    /**
+     * 为指定RedisKey开启提前刷新（XFetch）：getOrLoad命中时根据剩余过期时间ttl和上次加载耗时delta，
+     * 在 -delta * beta * ln(random) >= ttl 时在后台重新加载，读取方仍拿到当前值、不会阻塞。
+     * 越接近过期、加载越慢，提前刷新的概率越大，各节点很少同时刷新。
+     * 本地一级缓存或热点副本命中时只抽样一部分读取查询剩余过期时间，不会让每次读取都访问redis。
+     *
+     * @param redisKey
+     * @param beta     大于1时更早刷新，小于1时更晚，一般为1
+     */
+    public void enableRefreshAhead(RedisKey redisKey, double beta) {
+        startRefreshExecutor();
+        this.refreshAheadBetas.put(redisKey.getKey(), beta);
+    }
+
+    public void enableRefreshAhead(RedisKey redisKey) {
+        enableRefreshAhead(redisKey, 1.0);
+    }
+
+    public void disableRefreshAhead(RedisKey redisKey) {
+        this.refreshAheadBetas.remove(redisKey.getKey());
+    }
+
+    private synchronized void startRefreshExecutor() {
+        if (this.refreshExecutor != null) {
+            return;
+        }
+        this.refreshExecutor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(REFRESH_QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "centaurs-redis-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private synchronized void startInvalidationBus() {
+        if (this.invalidationBus != null) {
+            return;
+        }
+        InvalidationBus bus = new InvalidationBus(this.redisService.redisTemplate);
+        bus.addListener(new InvalidationListener() {
+            @Override
+            public void onInvalidateKeys(Collection<String> keys) {
+                nearCache.invalidateKeys(keys);
+                hotKeys.invalidateKeys(keys);
+            }
+
+            @Override
+            public void onInvalidateNamespace(String namespace) {
+                nearCache.invalidateNamespace(namespace);
+                hotKeys.invalidateNamespace(namespace);
+                Generation generation = generations.get(namespace);
+                if (generation != null) {
+                    // 下次generateKey时重新从redis读取代数
+                    generations.put(namespace, new Generation(generation.value, 0L));
+                }
+            }
+        });
+        try {
+            bus.start();
+        } catch (Exception e) {
+            // 订阅失败时本地副本只能依靠ttl过期
+            logger.warn("Failed to subscribe cache invalidation channel: {}", e.getMessage());
+        }
+        this.invalidationBus = bus;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.circuitBreaker.stop();
+        if (this.invalidationBus != null) {
+            this.invalidationBus.stop();
+        }
+        synchronized (this) {
+            if (this.refreshExecutor != null) {
+                this.refreshExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 结果会放入本地一级缓存或热点副本的读取访问主节点：从节点有复制延迟，刚失效的旧值会被重新放入本地并保留到ttl
+     */
+    private RedisService readerFor(String namespace) {
+        return this.nearCache.isEnabled(namespace) || this.hotKeys.isEnabled(namespace) ? this.redisService.primary() : this.redisService;
+    }
+
+    /**
+     * 先查本地一级缓存和热点key副本，未命中再查redis
+     */
+    private Object readFromRedis(RedisKey redisTable, String currentKey, RedisService reader) {
+        String namespace = redisTable.getKey();
+        boolean hot = this.hotKeys.record(namespace, currentKey);
+        Object result = readLocal(namespace, currentKey, hot);
+        if (result == null) {
+            result = reader.getObj(currentKey);
+            afterRedisRead(namespace, currentKey, result, hot);
+        }
+        return result;
+    }
+
+    /**
+     * 同readFromRedis，按类型读取
+     */
+    private <T> T readFromRedis(RedisKey redisTable, String currentKey, Class<T> returnType) {
+        String namespace = redisTable.getKey();
+        boolean hot = this.hotKeys.record(namespace, currentKey);
+        Object result = readLocal(namespace, currentKey, hot);
+        if (result == null) {
+            result = readerFor(namespace).getObj(currentKey, returnType);
+            afterRedisRead(namespace, currentKey, result, hot);
+        }
+        return (T) result;
+    }
+
+    private Object readLocal(String namespace, String currentKey, boolean hot) {
+        Object result = this.nearCache.get(namespace, currentKey);
+        if (result == null && hot) {
+            result = this.hotKeys.getReplica(namespace, currentKey);
+        }
+        return result;
+    }
+
+    private void afterRedisRead(String namespace, String currentKey, Object value, boolean hot) {
+        this.nearCache.put(namespace, currentKey, value);
+        if (hot) {
+            this.hotKeys.putReplica(namespace, currentKey, value);
+        }
+    }
+
+    /**
+     * 写入redis后更新本地副本，并通知其他节点失效
+     */
+    private void afterRedisWrite(RedisKey redisTable, String currentKey, Object value) {
+        String namespace = redisTable.getKey();
+        boolean near = this.nearCache.isEnabled(namespace);
+        if (near) {
+            this.nearCache.put(namespace, currentKey, value);
+        }
+        if (this.hotKeys.isEnabled(namespace)) {
+            this.hotKeys.invalidate(namespace, currentKey);
+            this.invalidationBus.publishKey(currentKey);
+        } else if (near) {
+            this.invalidationBus.publishKey(currentKey);
+        }
+    }
+
+    private void afterRedisDelete(RedisKey redisTable, String currentKey) {
+        String namespace = redisTable.getKey();
+        boolean near = this.nearCache.isEnabled(namespace);
+        boolean hot = this.hotKeys.isEnabled(namespace);
+        if (near) {
+            this.nearCache.invalidate(namespace, currentKey);
+        }
+        if (hot) {
+            this.hotKeys.invalidate(namespace, currentKey);
+        }
+        if (near || hot) {
+            this.invalidationBus.publishKey(currentKey);
+        }
     }
 
     /**
@@ -38,34 +643,45 @@ public abstract class CacheServiceWrapper {
      * @return 返回key对应的对象
      */
     public Object getObj(RedisKey redisTable, String key, boolean logKey) {
+        return getObj(redisTable, key, logKey, false);
+    }
+
+    /**
+     * @param fromPrimary 是否必须读主节点，加载锁等需要读到其他节点刚写入的值时使用
+     */
+    private Object getObj(RedisKey redisTable, String key, boolean logKey, boolean fromPrimary) {
+        byte[] rawKey = logKey ? null : encodeKey(redisTable, key);
+        RedisService reader = fromPrimary ? this.redisService.primary() : this.redisService;
+        if (rawKey != null) {
+            return lookup(redisTable, () -> reader.getObj(rawKey), () -> this.cacheContainer.get(generateKey(redisTable, key)));
+        }
         Object result = null;
         String currentKey = generateKey(redisTable, key);
         if (logKey) {
             logger.debug("get key is: " + key);
             logger.debug("get currentKey is: " + currentKey);
         }
-        if (this.redisWorking) {
-            result = this.redisService.getObj(currentKey);
-        } else {
-            result = this.cacheContainer.get(currentKey);
-        }
+        result = lookup(redisTable, () -> readFromRedis(redisTable, currentKey, fromPrimary ? reader : readerFor(redisTable.getKey())),
+                () -> this.cacheContainer.get(currentKey));
         return result;
     }
 
 
+    /**
+     * 按类型获取对象，setTypedObj写入的数据直接反序列化为returnType，其余数据与getObj相同
+     */
     public <T> T getObj(RedisKey redisTable, String key, Class<T> returnType, boolean logKey) {
-        Object result = null;
+        byte[] rawKey = logKey ? null : encodeKey(redisTable, key);
+        if (rawKey != null) {
+            return lookup(redisTable, () -> this.redisService.getObj(rawKey, returnType),
+                    () -> (T) this.cacheContainer.get(generateKey(redisTable, key)));
+        }
         String currentKey = generateKey(redisTable, key);
         if (logKey) {
             logger.debug("get key is: " + key);
             logger.debug("get currentKey is: " + currentKey);
         }
-        if (this.redisWorking) {
-            result = this.redisService.getObj(currentKey);
-        } else {
-            result = this.cacheContainer.get(currentKey);
-        }
-        return (T) result;
+        return lookup(redisTable, () -> readFromRedis(redisTable, currentKey, returnType), () -> (T) this.cacheContainer.get(currentKey));
     }
 
     public Object getObj(RedisKey redisTable, String key) {
@@ -76,6 +692,83 @@ public abstract class CacheServiceWrapper {
         return getObj(redisTable, key, returnType, false);
     }
 
+    /**
+     * 批量从redis或者内存获取同一RedisKey下的多个对象，redis模式下用MGET一次取回（key过多时自动分批）
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param keys       对象唯一key集合
+     * @return key到对象的映射，按keys的顺序，不存在的key不包含在结果中
+     */
+    public <T> Map<String, T> getObjs(RedisKey redisTable, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return execute(redisTable, () -> getObjsFromRedis(redisTable, keys, null), () -> {
+            Map<String, T> result = new LinkedHashMap<>();
+            for (String key : keys) {
+                Object value = this.cacheContainer.get(generateKey(redisTable, key));
+                if (value != null) {
+                    result.put(key, (T) value);
+                }
+            }
+            this.metrics.get(redisTable.getKey(), CacheBackend.MEMORY).recordLookups(result.size(), keys.size() - result.size());
+            return result;
+        });
+    }
+
+    /**
+     * @param returnType 为null时按默认的序列化方式读取
+     */
+    private <T> Map<String, T> getObjsFromRedis(RedisKey redisTable, Collection<String> keys, Class<T> returnType) {
+        Map<String, T> result = new LinkedHashMap<>();
+        String namespace = redisTable.getKey();
+        List<String> missingKeys = new ArrayList<>();
+        List<String> missingCurrentKeys = new ArrayList<>();
+        for (String key : keys) {
+            String currentKey = generateKey(redisTable, key);
+            Object value = this.nearCache.get(namespace, currentKey);
+            if (value == null) {
+                missingKeys.add(key);
+                missingCurrentKeys.add(currentKey);
+            }
+            // 未命中的先占位，保证结果顺序与keys一致
+            result.put(key, (T) value);
+        }
+        if (!missingCurrentKeys.isEmpty()) {
+            RedisService reader = readerFor(namespace);
+            List<?> values = returnType == null ? reader.multiGet(missingCurrentKeys)
+                    : reader.multiGet(missingCurrentKeys, returnType);
+            for (int i = 0; i < missingKeys.size(); i++) {
+                Object value = values.get(i);
+                if (value == null) {
+                    result.remove(missingKeys.get(i));
+                } else {
+                    this.nearCache.put(namespace, missingCurrentKeys.get(i), value);
+                    result.put(missingKeys.get(i), (T) value);
+                }
+            }
+        }
+        this.metrics.get(namespace, CacheBackend.REDIS).recordLookups(result.size(), keys.size() - result.size());
+        return result;
+    }
+
+    public <T> Map<String, T> getObjs(RedisKey redisTable, Collection<String> keys, Class<T> returnType) {
+        if (keys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return execute(redisTable, () -> getObjsFromRedis(redisTable, keys, returnType), () -> {
+            Map<String, T> result = new LinkedHashMap<>();
+            for (String key : keys) {
+                Object value = this.cacheContainer.get(generateKey(redisTable, key));
+                if (value != null) {
+                    result.put(key, (T) value);
+                }
+            }
+            this.metrics.get(redisTable.getKey(), CacheBackend.MEMORY).recordLookups(result.size(), keys.size() - result.size());
+            return result;
+        });
+    }
+
     /**
      * 在已知存的是String Enum.name()情况下取出
      *
@@ -118,12 +811,18 @@ public abstract class CacheServiceWrapper {
      * @param value
      */
     public void setObjWithoutTimeout(RedisKey redisKey, String key, Object value) {
-        String currentKey = generateKey(redisKey, key);
-        if (this.redisWorking) {
-            this.redisService.setObj(currentKey, value);
-        } else {
-            this.cacheContainer.put(currentKey, value);
+        byte[] rawKey = encodeKey(redisKey, key);
+        if (rawKey != null) {
+            RedisSerializer<Object> serializer = valueSerializer(redisKey);
+            run(redisKey, () -> this.redisService.setObj(rawKey, value, serializer), () -> this.cacheContainer.put(generateKey(redisKey, key), value));
+            return;
         }
+        String currentKey = generateKey(redisKey, key);
+        RedisSerializer<Object> serializer = valueSerializer(redisKey);
+        run(redisKey, () -> {
+            this.redisService.setObj(currentKey, value, serializer);
+            afterRedisWrite(redisKey, currentKey, value);
+        }, () -> this.cacheContainer.put(currentKey, value));
     }
 
     /**
@@ -155,42 +854,138 @@ public abstract class CacheServiceWrapper {
     }
 
     public Object setObj(RedisKey redisTable, String key, Object value, Long timeout, boolean logKey) {
-        String currentKey = generateKey(redisTable, key);
-        if (timeout == null) {
-            timeout = DEFAULT_TIME_OUT;
+        byte[] rawKey = logKey ? null : encodeKey(redisTable, key);
+        long currentTimeout = timeoutFor(redisTable, timeout);
+        RedisSerializer<Object> serializer = valueSerializer(redisTable);
+        if (rawKey != null) {
+            run(redisTable, () -> this.redisService.setObj(rawKey, currentTimeout, value, serializer),
+                    () -> this.cacheContainer.put(generateKey(redisTable, key), value, currentTimeout));
+            return value;
         }
+        String currentKey = generateKey(redisTable, key);
         if (logKey) {
             logger.debug("put key is: " + key);
             logger.debug("put currentKey is: " + currentKey);
         }
-        if (this.redisWorking) {
-            this.redisService.setObj(currentKey, timeout, value);
-        } else {
-            this.cacheContainer.put(currentKey, value, timeout);
-        }
+        run(redisTable, () -> {
+            this.redisService.setObj(currentKey, currentTimeout, value, serializer);
+            afterRedisWrite(redisTable, currentKey, value);
+        }, () -> this.cacheContainer.put(currentKey, value, currentTimeout));
 
         return value;
     }
 
-    public <T> T setObjV2(RedisKey redisTable, String key, T value, Long timeout, boolean logKey) {
+    /**
+     * 按value的实际类型放入，不带类型信息，体积更小、读取更快
+     * 只能通过getObj(redisTable, key, Class)或getObjs(redisTable, keys, Class)读取，
+     * 适合字段都是具体类型的对象
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param key        对象唯一key
+     * @param value      需要放入的对象
+     * @param timeout    缓存时间，单位毫秒，为null时使用默认值
+     */
+    public <T> T setTypedObj(RedisKey redisTable, String key, T value, Long timeout) {
+        long currentTimeout = timeoutFor(redisTable, timeout);
+        RedisSerializer<Object> serializer = valueSerializer(redisTable);
+        byte[] rawKey = encodeKey(redisTable, key);
+        if (rawKey != null) {
+            run(redisTable, () -> this.redisService.setTypedObj(rawKey, currentTimeout, value, serializer),
+                    () -> this.cacheContainer.put(generateKey(redisTable, key), value, currentTimeout));
+            return value;
+        }
         String currentKey = generateKey(redisTable, key);
-        if (timeout == null) {
-            timeout = DEFAULT_TIME_OUT;
+        run(redisTable, () -> {
+            this.redisService.setTypedObj(currentKey, currentTimeout, value, serializer);
+            afterRedisWrite(redisTable, currentKey, value);
+        }, () -> this.cacheContainer.put(currentKey, value, currentTimeout));
+        return value;
+    }
+
+    public <T> T setObjV2(RedisKey redisTable, String key, T value, Long timeout, boolean logKey) {
+        byte[] rawKey = logKey ? null : encodeKey(redisTable, key);
+        long currentTimeout = timeoutFor(redisTable, timeout);
+        RedisSerializer<Object> serializer = valueSerializer(redisTable);
+        if (rawKey != null) {
+            run(redisTable, () -> this.redisService.setObj(rawKey, currentTimeout, value, serializer),
+                    () -> this.cacheContainer.put(generateKey(redisTable, key), value, currentTimeout));
+            return value;
         }
+        String currentKey = generateKey(redisTable, key);
         if (logKey) {
             logger.debug("put key is: " + key);
             logger.debug("put currentKey is: " + currentKey);
         }
-        if (this.redisWorking) {
-            this.redisService.setObj(currentKey, timeout, value);
-        } else {
-            this.cacheContainer.put(currentKey, value, timeout);
-        }
+        run(redisTable, () -> {
+            this.redisService.setObj(currentKey, currentTimeout, value, serializer);
+            afterRedisWrite(redisTable, currentKey, value);
+        }, () -> this.cacheContainer.put(currentKey, value, currentTimeout));
 
         return value;
     }
 
 
+    /**
+     * 批量向redis或者内存放入同一RedisKey下的多个对象，redis模式下通过pipeline批量发送
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param entries    对象唯一key到对象的映射
+     * @param timeout    缓存时间，单位毫秒，为null时使用默认值
+     */
+    public void setObjs(RedisKey redisTable, Map<String, ?> entries, Long timeout) {
+        setObjs(redisTable, entries, null, timeout);
+    }
+
+    /**
+     * 批量放入，每个对象可以有不同的缓存时间
+     *
+     * @param redisTable     给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param entries        对象唯一key到对象的映射
+     * @param timeouts       对象唯一key到缓存时间的映射，单位毫秒，可以为null
+     * @param defaultTimeout timeouts中没有的key使用的缓存时间，为null时使用默认值
+     */
+    public void setObjs(RedisKey redisTable, Map<String, ?> entries, Map<String, Long> timeouts, Long defaultTimeout) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // 有随机延长时每个key单独计算缓存时间，避免同一批写入同时过期
+        boolean jitter = policy(redisTable).getTtlJitter() > 0;
+        Map<String, Object> currentEntries = new LinkedHashMap<>();
+        Map<String, Long> currentTimeouts = timeouts == null && !jitter ? null : new LinkedHashMap<>();
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            String currentKey = generateKey(redisTable, entry.getKey());
+            currentEntries.put(currentKey, entry.getValue());
+            Long timeout = timeouts == null ? null : timeouts.get(entry.getKey());
+            if (timeout != null || jitter) {
+                currentTimeouts.put(currentKey, timeoutFor(redisTable, timeout != null ? timeout : defaultTimeout));
+            }
+        }
+        long currentDefaultTimeout = timeoutFor(redisTable, defaultTimeout);
+        RedisSerializer<Object> serializer = valueSerializer(redisTable);
+        run(redisTable, () -> {
+            this.redisService.setObjs(currentEntries, currentTimeouts, currentDefaultTimeout, serializer);
+            String namespace = redisTable.getKey();
+            boolean near = this.nearCache.isEnabled(namespace);
+            boolean hot = this.hotKeys.isEnabled(namespace);
+            for (Map.Entry<String, Object> entry : currentEntries.entrySet()) {
+                if (near) {
+                    this.nearCache.put(namespace, entry.getKey(), entry.getValue());
+                }
+                if (hot) {
+                    this.hotKeys.invalidate(namespace, entry.getKey());
+                }
+            }
+            if (near || hot) {
+                this.invalidationBus.publishKeys(currentEntries.keySet());
+            }
+        }, () -> {
+            for (Map.Entry<String, Object> entry : currentEntries.entrySet()) {
+                Long timeout = currentTimeouts == null ? null : currentTimeouts.get(entry.getKey());
+                this.cacheContainer.put(entry.getKey(), entry.getValue(), timeout == null ? currentDefaultTimeout : timeout);
+            }
+        });
+    }
+
     /**
      * 删除redis或者内存中对应key的对象
      *
@@ -198,12 +993,16 @@ public abstract class CacheServiceWrapper {
      * @param key        对象唯一key
      */
     public void delKey(RedisKey redisTable, String key) {
+        byte[] rawKey = encodeKey(redisTable, key);
+        if (rawKey != null) {
+            run(redisTable, () -> this.redisService.deleteKey(rawKey), () -> this.cacheContainer.remove(generateKey(redisTable, key)));
+            return;
+        }
         String currentKey = generateKey(redisTable, key);
-        if (this.redisWorking) {
+        run(redisTable, () -> {
             this.redisService.deleteKey(currentKey);
-        } else {
-            this.cacheContainer.put(currentKey, null);
-        }
+            afterRedisDelete(redisTable, currentKey);
+        }, () -> this.cacheContainer.remove(currentKey));
     }
 
     /**
@@ -212,16 +1011,58 @@ public abstract class CacheServiceWrapper {
      * @param redisTable
      * @return
      */
-    public Long delAllKey(RedisKey redisTable) {
-        String pattern = generateKey(redisTable, "*");
-        if (this.redisWorking) {
-            Set<String> keys = this.redisService.findKeys(pattern);
-            return this.redisService.deleteKey(keys);
-        } else {
-            // FIXME
-            logger.warn("UnsupportedOperation: delAllKeyByPattern when redisWorking == false");
-            return 0L;
+    public Long delAllKey(RedisKey redisTable) {
+        return delAllKey(redisTable, null);
+    }
+
+    /**
+     * 删除同一RedisKey下的所有key，redis模式下边SCAN边分批UNLINK，不会阻塞redis
+     * 开启了代数模式的RedisKey只把代数加一，不实际删除
+     *
+     * @param redisTable
+     * @param listener   每批删除后回调进度，可以为null
+     * @return 删除的key数量，代数模式下为0
+     */
+    public Long delAllKey(RedisKey redisTable, ScanProgressListener listener) {
+        String namespace = redisTable.getKey();
+        if (this.generations.containsKey(namespace)) {
+            incrementGeneration(namespace);
+            this.nearCache.invalidateNamespace(namespace);
+            this.hotKeys.invalidateNamespace(namespace);
+            this.cacheContainer.removeByPrefix(namespace + ":");
+            return 0L;
+        }
+        return execute(redisTable, () -> {
+            String pattern = escapeGlob(namespace) + ":*";
+            long deleted = this.redisService.deleteKeysByPattern(pattern, listener);
+            if (this.nearCache.isEnabled(namespace) || this.hotKeys.isEnabled(namespace)) {
+                this.nearCache.invalidateNamespace(namespace);
+                this.hotKeys.invalidateNamespace(namespace);
+                this.invalidationBus.publishNamespace(namespace);
+            }
+            return deleted;
+        }, () -> {
+            long deleted = this.cacheContainer.removeByPrefix(namespace + ":");
+            if (listener != null) {
+                listener.onProgress(deleted, deleted);
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * 转义redis glob中的特殊字符，避免RedisKey中的*?[]被当作通配符
+     */
+    private static String escapeGlob(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
         }
+        return builder.toString();
     }
 
     /**
@@ -232,14 +1073,13 @@ public abstract class CacheServiceWrapper {
      * @return 存在true，不存在false
      */
     public boolean containKey(RedisKey redisTable, String key) {
-        String currentKey = generateKey(redisTable, key);
-        boolean result = false;
-        if (this.redisWorking) {
-            result = this.redisService.existsKey(currentKey);
-        } else {
-            result = this.cacheContainer.contains(currentKey);
+        byte[] rawKey = encodeKey(redisTable, key);
+        if (rawKey != null) {
+            return execute(redisTable, () -> this.redisService.existsKey(rawKey),
+                    () -> this.cacheContainer.contains(generateKey(redisTable, key)));
         }
-        return result;
+        String currentKey = generateKey(redisTable, key);
+        return execute(redisTable, () -> this.redisService.existsKey(currentKey), () -> this.cacheContainer.contains(currentKey));
     }
 
     /**
@@ -256,6 +1096,20 @@ public abstract class CacheServiceWrapper {
         }
     }
 
+    /**
+     * 调用loader重新加载并放入，同时记录加载耗时，供提前刷新估计下一次加载的耗时
+     * loader返回null时不放入，原有的值保留到过期
+     *
+     * @param redisTable
+     * @param key
+     * @param loader     参数为key，返回需要放入的对象
+     * @param timeout    缓存时间，单位毫秒，为null时使用默认值
+     * @return 新加载的对象
+     */
+    public <T> T refreshObj(RedisKey redisTable, String key, Function<String, T> loader, Long timeout) {
+        return loadAndSet(redisTable, key, loader, timeout);
+    }
+
     public Object removeObj(RedisKey redisTable, String key) {
         Object value = getObj(redisTable, key);
         delKey(redisTable, key);
@@ -278,16 +1132,198 @@ public abstract class CacheServiceWrapper {
     }
 
     public void clear() {
-        if (this.redisWorking) {
+        if (this.circuitBreaker.allowRequest()) {
             // not allow clear
         } else {
-            this.cacheContainer = new TimeBasedCache<>(DEFAULT_TIME_OUT);
+            this.cacheContainer.clear();
+        }
+    }
+
+
+    /**
+     * 获取对象，不存在时调用loader加载并放入
+     * 同一个key在本进程内同时只有一个线程执行loader，其他线程等待并共享结果；
+     * 开启enableLoadLock后，集群中同时只有一个节点执行loader。loader返回null时不放入。
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param key        对象唯一key
+     * @param loader     参数为key，返回需要放入的对象
+     * @param timeout    缓存时间，单位毫秒，为null时使用默认值
+     * @return
+     */
+    public <T> T getOrLoad(RedisKey redisTable, String key, Function<String, T> loader, Long timeout) {
+        String currentKey = generateKey(redisTable, key);
+        Double beta = this.refreshAheadBetas.get(redisTable.getKey());
+        Object value = beta == null ? getObj(redisTable, key) : getAndMaybeRefresh(redisTable, key, currentKey, beta, loader, timeout);
+        if (value != null) {
+            return (T) value;
+        }
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlightLoads.putIfAbsent(currentKey, load);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+        try {
+            T loaded = loadOnce(redisTable, key, currentKey, loader, timeout);
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlightLoads.remove(currentKey, load);
+        }
+    }
+
+    public <T> T getOrLoad(RedisKey redisTable, String key, Supplier<T> loader, Long timeout) {
+        return getOrLoad(redisTable, key, (Function<String, T>) ignored -> loader.get(), timeout);
+    }
+
+    private <T> T loadOnce(RedisKey redisTable, String key, String currentKey, Function<String, T> loader, Long timeout) {
+        // 上一次加载可能刚刚结束，其他节点加载的结果只保证在主节点上可见
+        Object value = getObj(redisTable, key, false, true);
+        if (value != null) {
+            return (T) value;
+        }
+        Long lockMillis = this.loadLocks.get(redisTable.getKey());
+        if (lockMillis == null || !this.circuitBreaker.allowRequest()) {
+            return loadAndSet(redisTable, key, loader, timeout);
+        }
+        String lockKey = currentKey + LOAD_LOCK_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        boolean locked = execute(redisTable, () -> this.redisService.setObjIfAbsent(lockKey, lockMillis, token), () -> true);
+        if (locked) {
+            try {
+                return loadAndSet(redisTable, key, loader, timeout);
+            } finally {
+                run(redisTable, () -> this.redisService.deleteIfValueEquals(lockKey, token), () -> {
+                });
+            }
+        }
+        // 其他节点正在加载，等它写入结果；锁被释放却没有结果（loader失败或返回null）或等待超时时自行加载
+        long deadline = System.currentTimeMillis() + lockMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LOAD_LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            value = getObj(redisTable, key, false, true);
+            if (value != null) {
+                return (T) value;
+            }
+            if (!execute(redisTable, () -> this.redisService.primary().existsKey(lockKey), () -> false)) {
+                break;
+            }
+        }
+        return loadAndSet(redisTable, key, loader, timeout);
+    }
+
+    private <T> T loadAndSet(RedisKey redisTable, String key, Function<String, T> loader, Long timeout) {
+        long start = System.nanoTime();
+        T loaded = loader.apply(key);
+        String namespace = redisTable.getKey();
+        if (this.refreshAheadBetas.containsKey(namespace)) {
+            long cost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.loadCosts.put(generateKey(redisTable, key), cost, timeoutFor(redisTable, timeout));
+            this.lastLoadCosts.put(namespace, cost);
+        }
+        if (loaded != null) {
+            setObj(redisTable, key, loaded, timeout);
+        }
+        return loaded;
+    }
+
+    /**
+     * 读取对象，开启了提前刷新时按XFetch规则决定是否在后台重新加载
+     */
+    private <T> Object getAndMaybeRefresh(RedisKey redisTable, String key, String currentKey, double beta,
+                                          Function<String, T> loader, Long timeout) {
+        if (!this.circuitBreaker.allowRequest()) {
+            return getObj(redisTable, key);
+        }
+        policy(redisTable);
+        String namespace = redisTable.getKey();
+        boolean hot = this.hotKeys.record(namespace, currentKey);
+        Object local = readLocal(namespace, currentKey, hot);
+        if (local != null) {
+            this.metrics.get(namespace, CacheBackend.REDIS).recordLookup(true);
+            if (ThreadLocalRandom.current().nextDouble() < REFRESH_AHEAD_LOCAL_SAMPLE_RATE) {
+                long ttlMillis = execute(redisTable, () -> this.redisService.getKeyExpire(currentKey, TimeUnit.MILLISECONDS), () -> -1L);
+                // -2表示redis中已过期，本地副本比redis活得久时同样在后台重新加载
+                if (ttlMillis == -2 || shouldRefreshEarly(namespace, currentKey, ttlMillis, beta)) {
+                    refreshInBackground(redisTable, key, currentKey, loader, timeout);
+                }
+            }
+            return local;
+        }
+        ExpiringValue expiring = execute(redisTable, () -> readerFor(namespace).getObjWithTtl(currentKey), () -> null);
+        if (expiring == null) {
+            return getObj(redisTable, key);
         }
+        this.metrics.get(namespace, CacheBackend.REDIS).recordLookup(expiring.getValue() != null);
+        afterRedisRead(namespace, currentKey, expiring.getValue(), hot);
+        if (expiring.getValue() != null && shouldRefreshEarly(namespace, currentKey, expiring.getTtlMillis(), beta)) {
+            refreshInBackground(redisTable, key, currentKey, loader, timeout);
+        }
+        return expiring.getValue();
+    }
+
+    private boolean shouldRefreshEarly(String namespace, String currentKey, long ttlMillis, double beta) {
+        if (ttlMillis < 0) {
+            return false;
+        }
+        Long delta = this.loadCosts.get(currentKey);
+        if (delta == null) {
+            // 由其他节点加载的key，用本节点最近一次加载的耗时估计
+            delta = this.lastLoadCosts.get(namespace);
+        }
+        if (delta == null) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return -Math.max(delta, 1L) * beta * Math.log(random) >= ttlMillis;
     }
 
+    private <T> void refreshInBackground(RedisKey redisTable, String key, String currentKey,
+                                         Function<String, T> loader, Long timeout) {
+        if (!this.refreshing.add(currentKey)) {
+            return;
+        }
+        try {
+            this.refreshExecutor.execute(() -> {
+                try {
+                    refreshObj(redisTable, key, loader, timeout);
+                } catch (Exception e) {
+                    logger.warn("Refresh ahead failed for {}: {}", currentKey, e.getMessage());
+                } finally {
+                    this.refreshing.remove(currentKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.refreshing.remove(currentKey);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
 
     /**
      * 判断redis或者内存中是否包含指定key，否则向redis或者内存放入对象
+     * redis中为一条SET NX PX命令，内存中为putIfAbsent，判断和放入是原子的
      *
      * @param redisTable
      * @param key
@@ -295,11 +1331,18 @@ public abstract class CacheServiceWrapper {
      * @param timeout
      * @return 如果已存在，返回null。否则返回放入的value
      */
-    public synchronized Object setObjIfNotContainKey(RedisKey redisTable, String key, Object value, Long timeout) {
-        if (containKey(redisTable, key)) {
-            return null;
-        }
-        return setObj(redisTable, key, value, timeout);
+    public Object setObjIfNotContainKey(RedisKey redisTable, String key, Object value, Long timeout) {
+        String currentKey = generateKey(redisTable, key);
+        long currentTimeout = timeoutFor(redisTable, timeout);
+        RedisSerializer<Object> serializer = valueSerializer(redisTable);
+        boolean stored = execute(redisTable, () -> {
+            boolean absent = this.redisService.setObjIfAbsent(currentKey, currentTimeout, value, serializer);
+            if (absent) {
+                afterRedisWrite(redisTable, currentKey, value);
+            }
+            return absent;
+        }, () -> this.cacheContainer.putIfAbsent(currentKey, value, currentTimeout) == null);
+        return stored ? value : null;
     }
 
     /**
@@ -310,10 +1353,9 @@ public abstract class CacheServiceWrapper {
      * @param value
      */
     public void rPushObj(RedisKey redisKey, String key, Object value) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            this.redisService.rPushObj(currentKey, value);
-        }
+        String currentKey = generateKey(redisKey, key);
+        run(redisKey, () -> this.redisService.rPushObj(currentKey, value), () -> {
+        });
     }
 
     /**
@@ -324,10 +1366,9 @@ public abstract class CacheServiceWrapper {
      * @param value
      */
     public void lPushObj(RedisKey redisKey, String key, Object value) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            this.redisService.lPushObj(currentKey, value);
-        }
+        String currentKey = generateKey(redisKey, key);
+        run(redisKey, () -> this.redisService.lPushObj(currentKey, value), () -> {
+        });
     }
 
     /**
@@ -338,12 +1379,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Object lPopObj(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.lPopObj(currentKey);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.lPopObj(currentKey), () -> null);
     }
 
     /**
@@ -354,12 +1391,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Object rPopObj(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.rPopObj(currentKey);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.rPopObj(currentKey), () -> null);
     }
 
     /**
@@ -370,12 +1403,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Object lPeekObj(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.lPeekObj(currentKey);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.lPeekObj(currentKey), () -> null);
     }
 
     /**
@@ -386,12 +1415,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Object rPeekObj(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.rPeekObj(currentKey);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.rPeekObj(currentKey), () -> null);
     }
 
     /**
@@ -402,12 +1427,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public List<Object> getList(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.getList(currentKey);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.getList(currentKey), () -> null);
     }
 
     /**
@@ -418,12 +1439,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> T lPopObj(RedisKey redisKey, String key, Class<T> returnType) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.lPopObj(currentKey, returnType);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.lPopObj(currentKey, returnType), () -> null);
     }
 
     /**
@@ -434,12 +1451,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> T rPopObj(RedisKey redisKey, String key, Class<T> returnType) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.rPopObj(currentKey, returnType);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.rPopObj(currentKey, returnType), () -> null);
     }
 
     /**
@@ -450,12 +1463,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> T lPeekObj(RedisKey redisKey, String key, Class<T> returnType) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.lPeekObj(currentKey, returnType);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.lPeekObj(currentKey, returnType), () -> null);
     }
 
     /**
@@ -466,12 +1475,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> T rPeekObj(RedisKey redisKey, String key, Class<T> returnType) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.rPeekObj(currentKey, returnType);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.rPeekObj(currentKey, returnType), () -> null);
     }
 
     /**
@@ -482,12 +1487,42 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> List<T> getList(RedisKey redisKey, String key, Class<T> returnType) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.getList(currentKey, returnType);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.getList(currentKey, returnType), () -> null);
+    }
+
+    /**
+     * 按页遍历list，每页一次LRANGE，遍历到时才读取下一页，内存模式下为空
+     *
+     * @param redisKey
+     * @param key
+     * @param pageSize 每页元素数量
+     * @return
+     */
+    public <T> Iterator<T> iterateList(RedisKey redisKey, String key, int pageSize, Class<T> returnType) {
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.iterateList(currentKey, pageSize, returnType), Collections::emptyIterator);
+    }
+
+    public Iterator<Object> iterateList(RedisKey redisKey, String key, int pageSize) {
+        return iterateList(redisKey, key, pageSize, Object.class);
+    }
+
+    /**
+     * 按页读取list的Stream，参见iterateList
+     *
+     * @param redisKey
+     * @param key
+     * @param pageSize 每页元素数量
+     * @return
+     */
+    public <T> Stream<T> streamList(RedisKey redisKey, String key, int pageSize, Class<T> returnType) {
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.streamList(currentKey, pageSize, returnType), Stream::empty);
+    }
+
+    public Stream<Object> streamList(RedisKey redisKey, String key, int pageSize) {
+        return streamList(redisKey, key, pageSize, Object.class);
     }
 
     /**
@@ -498,19 +1533,14 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Long getListSize(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.listSize(currentKey);
-        } else {
-            return 0L;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.listSize(currentKey), () -> 0L);
     }
 
     public void setList(RedisKey redisKey, String key, List<Object> objs) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            this.redisService.setList(currentKey, objs);
-        }
+        String currentKey = generateKey(redisKey, key);
+        run(redisKey, () -> this.redisService.setList(currentKey, objs), () -> {
+        });
     }
 
     /**
@@ -521,12 +1551,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Object lPopAndRPush(RedisKey redisKey, String key) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.lPopAndRightPush(currentKey);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.lPopAndRightPush(currentKey), () -> null);
     }
 
     /**
@@ -538,13 +1564,9 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Object lPopAndRPushToAnother(RedisKey redisKey, String sourceKey, String destinationKey) {
-        if (redisWorking) {
-            String currentSourceKey = generateKey(redisKey, sourceKey);
-            String currentDestinationKey = generateKey(redisKey, destinationKey);
-            return this.redisService.lPopAndRPushToAnother(currentSourceKey, currentDestinationKey);
-        } else {
-            return null;
-        }
+        String currentSourceKey = generateKey(redisKey, sourceKey);
+        String currentDestinationKey = generateKey(redisKey, destinationKey);
+        return execute(redisKey, () -> this.redisService.lPopAndRPushToAnother(currentSourceKey, currentDestinationKey), () -> null);
     }
 
     /**
@@ -555,12 +1577,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> T lPopAndRPush(RedisKey redisKey, String key, Class<T> returnType) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.lPopAndRightPush(currentKey, returnType);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.lPopAndRightPush(currentKey, returnType), () -> null);
     }
 
     /**
@@ -572,13 +1590,50 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public <T> T lPopAndRPushToAnother(RedisKey redisKey, String sourceKey, String destinationKey, Class<T> returnType) {
-        if (redisWorking) {
-            String currentSourceKey = generateKey(redisKey, sourceKey);
-            String currentDestinationKey = generateKey(redisKey, destinationKey);
-            return this.redisService.lPopAndRPushToAnother(currentSourceKey, currentDestinationKey, returnType);
-        } else {
-            return null;
-        }
+        String currentSourceKey = generateKey(redisKey, sourceKey);
+        String currentDestinationKey = generateKey(redisKey, destinationKey);
+        return execute(redisKey, () -> this.redisService.lPopAndRPushToAnother(currentSourceKey, currentDestinationKey, returnType), () -> null);
+    }
+
+    /**
+     * 阻塞式左侧出队元素，队列为空时最多等待timeout
+     *
+     * @param redisKey
+     * @param key
+     * @param timeout  最长等待时间，单位毫秒，redis按秒取整
+     * @return 超时返回null
+     */
+    public Object bLPopObj(RedisKey redisKey, String key, long timeout) {
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.bLPopObj(currentKey, timeout), () -> null);
+    }
+
+    /**
+     * 阻塞式右侧出队元素，队列为空时最多等待timeout
+     *
+     * @param redisKey
+     * @param key
+     * @param timeout  最长等待时间，单位毫秒，redis按秒取整
+     * @return 超时返回null
+     */
+    public Object bRPopObj(RedisKey redisKey, String key, long timeout) {
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.bRPopObj(currentKey, timeout), () -> null);
+    }
+
+    /**
+     * 阻塞式从A队列队尾出队，将对应的元素，从B队列队首入队，A队列为空时最多等待timeout
+     *
+     * @param redisKey
+     * @param sourceKey
+     * @param destinationKey
+     * @param timeout        最长等待时间，单位毫秒，redis按秒取整
+     * @return 超时返回null
+     */
+    public Object bRPopAndLPushToAnother(RedisKey redisKey, String sourceKey, String destinationKey, long timeout) {
+        String currentSourceKey = generateKey(redisKey, sourceKey);
+        String currentDestinationKey = generateKey(redisKey, destinationKey);
+        return execute(redisKey, () -> this.redisService.bRPopAndLPushToAnother(currentSourceKey, currentDestinationKey, timeout), () -> null);
     }
 
     /**
@@ -591,12 +1646,8 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public Long removeFromList(RedisKey redisKey, String key, long count, Object obj) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.removeFromList(currentKey, count, obj);
-        } else {
-            return null;
-        }
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.removeFromList(currentKey, count, obj), () -> null);
     }
 
     /**
@@ -608,12 +1659,180 @@ public abstract class CacheServiceWrapper {
      * @return
      */
     public boolean listContainObj(RedisKey redisKey, String key, Object obj) {
-        if (redisWorking) {
-            String currentKey = generateKey(redisKey, key);
-            return this.redisService.listContainObj(currentKey, obj);
-        } else {
-            return false;
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.listContainObj(currentKey, obj), () -> false);
+    }
+
+    /**
+     * 查找元素在list中第一次出现的下标，在redis端按序列化后的字节比较
+     *
+     * @param redisKey
+     * @param key
+     * @param obj
+     * @return 不存在返回-1
+     */
+    public long listIndexOf(RedisKey redisKey, String key, Object obj) {
+        String currentKey = generateKey(redisKey, key);
+        return execute(redisKey, () -> this.redisService.listIndexOf(currentKey, obj), () -> -1L);
+    }
+
+    /**
+     * 异步获取对象，参见getObj
+     * 熔断打开时返回已完成的future
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param key        对象唯一key
+     * @return
+     */
+    public CompletableFuture<Object> getObjAsync(RedisKey redisTable, String key) {
+        String currentKey = generateKey(redisTable, key);
+        return lookupAsync(redisTable, () -> readFromRedisAsync(redisTable, currentKey, reader -> reader.getObjAsync(currentKey)),
+                () -> this.cacheContainer.get(currentKey));
+    }
+
+    /**
+     * 异步按类型获取对象，参见getObj(redisTable, key, Class)
+     */
+    public <T> CompletableFuture<T> getObjAsync(RedisKey redisTable, String key, Class<T> returnType) {
+        String currentKey = generateKey(redisTable, key);
+        return lookupAsync(redisTable, () -> readFromRedisAsync(redisTable, currentKey,
+                        reader -> reader.getObjAsync(currentKey, returnType)),
+                () -> (T) this.cacheContainer.get(currentKey));
+    }
+
+    /**
+     * readFromRedis的异步版本，一级缓存或热点副本命中时不发出请求
+     */
+    private <T> CompletableFuture<T> readFromRedisAsync(RedisKey redisTable, String currentKey,
+                                                        Function<RedisService, CompletableFuture<T>> redisCall) {
+        String namespace = redisTable.getKey();
+        boolean hot = this.hotKeys.record(namespace, currentKey);
+        Object cached = readLocal(namespace, currentKey, hot);
+        if (cached != null) {
+            return CompletableFuture.completedFuture((T) cached);
+        }
+        return redisCall.apply(readerFor(namespace)).thenApply(value -> {
+            afterRedisRead(namespace, currentKey, value, hot);
+            return value;
+        });
+    }
+
+    /**
+     * 异步放入对象，参见setObj
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param key        对象唯一key
+     * @param value      需要放入的对象
+     * @param timeout    缓存时间，单位毫秒，为null时使用默认值
+     * @return 写入完成时完成
+     */
+    public CompletableFuture<Void> setObjAsync(RedisKey redisTable, String key, Object value, Long timeout) {
+        String currentKey = generateKey(redisTable, key);
+        long currentTimeout = timeoutFor(redisTable, timeout);
+        RedisSerializer<Object> serializer = valueSerializer(redisTable);
+        return executeAsync(redisTable, () -> this.redisService.setObjAsync(currentKey, currentTimeout, value, serializer)
+                        .thenRun(() -> afterRedisWrite(redisTable, currentKey, value)),
+                () -> {
+                    this.cacheContainer.put(currentKey, value, currentTimeout);
+                    return null;
+                });
+    }
+
+    /**
+     * 异步批量获取，参见getObjs
+     *
+     * @param redisTable 给每个对象指定的key前缀，在RedisTable枚举定义，防止不同人使用冲突
+     * @param keys       对象唯一key集合
+     * @return key到对象的映射，按keys的顺序，不存在的key不包含在结果中
+     */
+    public <T> CompletableFuture<Map<String, T>> getObjsAsync(RedisKey redisTable, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        }
+        return executeAsync(redisTable, () -> getObjsFromRedisAsync(redisTable, keys), () -> {
+            Map<String, T> result = new LinkedHashMap<>();
+            for (String key : keys) {
+                Object value = this.cacheContainer.get(generateKey(redisTable, key));
+                if (value != null) {
+                    result.put(key, (T) value);
+                }
+            }
+            this.metrics.get(redisTable.getKey(), CacheBackend.MEMORY).recordLookups(result.size(), keys.size() - result.size());
+            return result;
+        });
+    }
+
+    private <T> CompletableFuture<Map<String, T>> getObjsFromRedisAsync(RedisKey redisTable, Collection<String> keys) {
+        Map<String, T> result = new LinkedHashMap<>();
+        String namespace = redisTable.getKey();
+        List<String> missingKeys = new ArrayList<>();
+        List<String> missingCurrentKeys = new ArrayList<>();
+        for (String key : keys) {
+            String currentKey = generateKey(redisTable, key);
+            Object value = this.nearCache.get(namespace, currentKey);
+            if (value == null) {
+                missingKeys.add(key);
+                missingCurrentKeys.add(currentKey);
+            }
+            // 未命中的先占位，保证结果顺序与keys一致
+            result.put(key, (T) value);
+        }
+        if (missingCurrentKeys.isEmpty()) {
+            this.metrics.get(namespace, CacheBackend.REDIS).recordLookups(result.size(), 0);
+            return CompletableFuture.completedFuture(result);
         }
+        return readerFor(namespace).multiGetAsync(missingCurrentKeys).thenApply(values -> {
+            for (int i = 0; i < missingKeys.size(); i++) {
+                Object value = values.get(i);
+                if (value == null) {
+                    result.remove(missingKeys.get(i));
+                } else {
+                    this.nearCache.put(namespace, missingCurrentKeys.get(i), value);
+                    result.put(missingKeys.get(i), (T) value);
+                }
+            }
+            this.metrics.get(namespace, CacheBackend.REDIS).recordLookups(result.size(), keys.size() - result.size());
+            return result;
+        });
+    }
+
+    /**
+     * 异步右侧入队，参见rPushObj
+     */
+    public CompletableFuture<Void> rPushObjAsync(RedisKey redisKey, String key, Object value) {
+        String currentKey = generateKey(redisKey, key);
+        return executeAsync(redisKey, () -> this.redisService.rPushObjAsync(currentKey, value).thenApply(size -> null), () -> null);
+    }
+
+    /**
+     * 异步左侧入队，参见lPushObj
+     */
+    public CompletableFuture<Void> lPushObjAsync(RedisKey redisKey, String key, Object value) {
+        String currentKey = generateKey(redisKey, key);
+        return executeAsync(redisKey, () -> this.redisService.lPushObjAsync(currentKey, value).thenApply(size -> null), () -> null);
+    }
+
+    /**
+     * 异步左侧出队，参见lPopObj
+     */
+    public CompletableFuture<Object> lPopObjAsync(RedisKey redisKey, String key) {
+        String currentKey = generateKey(redisKey, key);
+        return executeAsync(redisKey, () -> this.redisService.lPopObjAsync(currentKey), () -> null);
+    }
+
+    /**
+     * 异步右侧出队，参见rPopObj
+     */
+    public CompletableFuture<Object> rPopObjAsync(RedisKey redisKey, String key) {
+        String currentKey = generateKey(redisKey, key);
+        return executeAsync(redisKey, () -> this.redisService.rPopObjAsync(currentKey), () -> null);
     }
 
+    /**
+     * 异步获取整个队列，参见getList
+     */
+    public CompletableFuture<List<Object>> getListAsync(RedisKey redisKey, String key) {
+        String currentKey = generateKey(redisKey, key);
+        return executeAsync(redisKey, () -> this.redisService.getListAsync(currentKey), () -> null);
+    }
 }
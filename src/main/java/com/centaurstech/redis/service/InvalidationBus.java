@@ -0,0 +1,146 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.interfaces.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 基于redis pub/sub的本地缓存失效广播
+ * 消息格式（UTF-8）：第一行为发送方节点id，之后每行一条，"K"开头为单个key，"N"开头为整个RedisKey前缀
+ * 发送方自己会忽略自己发出的消息
+ */
+public class InvalidationBus implements MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(InvalidationBus.class);
+    public static final String DEFAULT_CHANNEL = "centaurs:redis:invalidation";
+    private static final char KEY_FLAG = 'K';
+    private static final char NAMESPACE_FLAG = 'N';
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final byte[] channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private RedisMessageListenerContainer container;
+
+    public InvalidationBus(RedisTemplate<String, Object> redisTemplate) {
+        this(redisTemplate, DEFAULT_CHANNEL);
+    }
+
+    public InvalidationBus(RedisTemplate<String, Object> redisTemplate, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void addListener(InvalidationListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * 订阅失效频道，重复调用无副作用
+     */
+    public synchronized void start() {
+        if (container != null) {
+            return;
+        }
+        RedisConnectionFactory factory = redisTemplate.getConnectionFactory();
+        RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(factory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(new String(channel, StandardCharsets.UTF_8)));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        this.container = listenerContainer;
+    }
+
+    public synchronized void stop() {
+        if (container == null) {
+            return;
+        }
+        try {
+            container.destroy();
+        } catch (Exception e) {
+            logger.warn("Error stopping invalidation listener container", e);
+        }
+        container = null;
+    }
+
+    public boolean isRunning() {
+        return container != null;
+    }
+
+    public void publishKey(String key) {
+        publishKeys(Collections.singleton(key));
+    }
+
+    /**
+     * 广播一批key失效，一次PUBLISH
+     *
+     * @param keys 完整的redis key
+     */
+    public void publishKeys(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        StringBuilder body = new StringBuilder(nodeId);
+        for (String key : keys) {
+            body.append('\n').append(KEY_FLAG).append(key);
+        }
+        publish(body.toString());
+    }
+
+    public void publishNamespace(String namespace) {
+        publish(new StringBuilder(nodeId).append('\n').append(NAMESPACE_FLAG).append(namespace).toString());
+    }
+
+    private void publish(String body) {
+        byte[] message = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, message));
+        } catch (Exception e) {
+            // 广播失败时其他节点的本地副本依赖ttl过期
+            logger.warn("Failed to publish cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] lines = body.split("\n");
+        if (lines.length < 2 || nodeId.equals(lines[0])) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(lines.length - 1);
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.charAt(0) == KEY_FLAG) {
+                keys.add(line.substring(1));
+            } else if (line.charAt(0) == NAMESPACE_FLAG) {
+                String namespace = line.substring(1);
+                for (InvalidationListener listener : listeners) {
+                    listener.onInvalidateNamespace(namespace);
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            for (InvalidationListener listener : listeners) {
+                listener.onInvalidateKeys(keys);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.centaurstech.redis.service;
+
+import org.springframework.data.redis.core.ListOperations;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按页读取redis list的迭代器，每页一次LRANGE，用到时才取下一页
+ * 不是快照：遍历期间list被修改时，可能重复或遗漏元素
+ *
+ * @param <T>
+ */
+class ListPageIterator<T> implements Iterator<T> {
+    private final ListOperations<String, Object> listOperations;
+    private final String key;
+    private final int pageSize;
+    private long nextStart = 0;
+    private boolean lastPage = false;
+    private Iterator<Object> page = Collections.emptyIterator();
+
+    ListPageIterator(ListOperations<String, Object> listOperations, String key, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.listOperations = listOperations;
+        this.key = key;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            fetchPage();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return (T) page.next();
+    }
+
+    private void fetchPage() {
+        List<Object> values = listOperations.range(key, nextStart, nextStart + pageSize - 1);
+        if (values == null || values.size() < pageSize) {
+            lastPage = true;
+        }
+        if (values != null) {
+            nextStart += values.size();
+            page = values.iterator();
+        }
+    }
+}
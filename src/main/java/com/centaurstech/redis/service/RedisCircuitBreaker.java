@@ -0,0 +1,216 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.domain.CircuitState;
+import com.centaurstech.redis.interfaces.CircuitStateListener;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisConnectionException;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisLoadingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * redis熔断器
+ * 连续失败达到阈值（调用失败或后台探测失败）后打开，之后的请求不再访问redis，直接使用本地内存；
+ * 后台线程定时PING，打开状态下探测成功即关闭，恢复访问redis。
+ * allowRequest只读一个volatile变量，redis故障期间请求不会再等待连接超时。
+ */
+public class RedisCircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final long DEFAULT_PROBE_INTERVAL_MILLIS = 1000L;
+    public static final long DEFAULT_PROBE_TIMEOUT_MILLIS = 500L;
+
+    private final Runnable probe;
+    private final AtomicReference<CircuitState> state = new AtomicReference<>(CircuitState.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final List<CircuitStateListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private volatile long probeTimeoutMillis = DEFAULT_PROBE_TIMEOUT_MILLIS;
+    private long probeIntervalMillis = DEFAULT_PROBE_INTERVAL_MILLIS;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService probeWorker;
+    private Future<?> runningProbe;
+
+    /**
+     * @param probe 探测redis是否可用，抛出异常即视为不可用，一般为PING
+     */
+    public RedisCircuitBreaker(Runnable probe) {
+        this.probe = probe;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public void setProbeTimeoutMillis(long probeTimeoutMillis) {
+        this.probeTimeoutMillis = probeTimeoutMillis;
+    }
+
+    /**
+     * 需要在start之前设置
+     */
+    public void setProbeIntervalMillis(long probeIntervalMillis) {
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    public void addListener(CircuitStateListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public CircuitState getState() {
+        return state.get();
+    }
+
+    /**
+     * 是否可以访问redis
+     */
+    public boolean allowRequest() {
+        return state.get() == CircuitState.CLOSED;
+    }
+
+    public void onSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public void onFailure(Throwable e) {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold
+                && transition(CircuitState.CLOSED, CircuitState.OPEN)) {
+            logger.warn("Redis circuit opened after {} consecutive failures: {}", failureThreshold, e.getMessage());
+        }
+    }
+
+    /**
+     * 直接打开熔断器，如启动时redis就不可用
+     */
+    public void trip() {
+        consecutiveFailures.set(failureThreshold);
+        transition(CircuitState.CLOSED, CircuitState.OPEN);
+    }
+
+    /**
+     * 是否属于redis不可用引起的异常，序列化错误、命令用法错误等不计入失败
+     */
+    public static boolean isConnectionFailure(Throwable e) {
+        if (e instanceof RedisConnectionFailureException || e instanceof QueryTimeoutException) {
+            return true;
+        }
+        if (e instanceof RedisSystemException) {
+            return isLettuceConnectionError(e.getCause());
+        }
+        return isLettuceConnectionError(e);
+    }
+
+    /**
+     * 服务端返回的错误（WRONGTYPE、OOM、脚本错误等）为RedisCommandExecutionException，不计入失败，正在加载数据除外；
+     * lettuce用RedisException本身表示连接已关闭、断线时拒绝命令等连接状态错误
+     */
+    private static boolean isLettuceConnectionError(Throwable cause) {
+        if (cause instanceof RedisLoadingException) {
+            return true;
+        }
+        if (cause == null || cause instanceof RedisCommandExecutionException) {
+            return false;
+        }
+        return cause instanceof RedisConnectionException
+                || cause instanceof RedisCommandTimeoutException
+                || cause instanceof IOException
+                || cause.getClass() == RedisException.class;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        probeWorker = Executors.newSingleThreadExecutor(daemonThreadFactory("centaurs-redis-probe"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("centaurs-redis-health"));
+        scheduler.scheduleWithFixedDelay(this::runProbe, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            probeWorker.shutdownNow();
+            scheduler = null;
+            probeWorker = null;
+        }
+    }
+
+    private void runProbe() {
+        boolean open = state.get() != CircuitState.CLOSED;
+        if (open) {
+            transition(CircuitState.OPEN, CircuitState.HALF_OPEN);
+        }
+        boolean healthy;
+        try {
+            if (runningProbe != null && !runningProbe.isDone()) {
+                // 上一次探测还卡着，直接算失败
+                throw new IllegalStateException("previous probe still running");
+            }
+            runningProbe = probeWorker.submit(probe);
+            runningProbe.get(probeTimeoutMillis, TimeUnit.MILLISECONDS);
+            healthy = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            healthy = false;
+            if (!open) {
+                onFailure(e);
+            } else {
+                logger.debug("Redis health probe failed: {}", e.getMessage());
+            }
+        }
+        if (healthy) {
+            consecutiveFailures.set(0);
+            if (open && transition(CircuitState.HALF_OPEN, CircuitState.CLOSED)) {
+                logger.info("Redis recovered, circuit closed");
+            }
+        } else if (open) {
+            transition(CircuitState.HALF_OPEN, CircuitState.OPEN);
+        }
+    }
+
+    private boolean transition(CircuitState from, CircuitState to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        for (CircuitStateListener listener : listeners) {
+            try {
+                listener.onStateChange(from, to);
+            } catch (Exception e) {
+                logger.warn("Error in circuit state listener", e);
+            }
+        }
+        return true;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,24 +1,72 @@
 package com.centaurstech.redis.service;
 
+import com.centaurstech.redis.domain.CachePolicy;
+import com.centaurstech.redis.domain.ExpiringValue;
+import com.centaurstech.redis.interfaces.ScanProgressListener;
+import com.centaurstech.redis.serializer.CodecRedisSerializer;
+import com.centaurstech.redis.serializer.CompressingRedisSerializer;
+import com.centaurstech.redis.serializer.TypedValueSerializer;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.output.IntegerOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConverters;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
-
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
 
 @Service
 @Qualifier("redisService")
 @ConditionalOnMissingBean(value = {RedisService.class})
 public class RedisService {
+    private static final Logger logger = LoggerFactory.getLogger(RedisService.class);
     public RedisTemplate<String, Object> redisTemplate;
     public HashOperations<String, String, Object> hashOperations;
     public ValueOperations<String, Object> valueOperations;
@@ -45,6 +93,149 @@ public class RedisService {
      */
     public static final long NOT_EXPIRE = -1;
 
+    /**
+     * 批量获取时每次MGET的最大key数量
+     */
+    public static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 500;
+
+    /**
+     * 批量写入时每次pipeline发送的最大命令数量
+     */
+    public static final int DEFAULT_PIPELINE_BATCH_SIZE = 1000;
+
+    private int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+
+    /**
+     * SCAN每次遍历的建议数量（COUNT）
+     */
+    public static final long DEFAULT_SCAN_COUNT = 1000L;
+
+    /**
+     * 按pattern删除时每次UNLINK的最大key数量
+     */
+    public static final int DEFAULT_UNLINK_BATCH_SIZE = 500;
+
+    /**
+     * 从KEYS[1]队首出队并从KEYS[2]队尾入队，脚本内执行保证原子性，通过EVALSHA调用只需一次往返
+     * （redis 6.2的LMOVE在当前lettuce版本中不可用）
+     * 返回类型为Object时按多条回复处理，所以把元素放在数组中返回，队列为空时返回空数组
+     */
+    private static final RedisScript<List> LPOP_RPUSH_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('LPOP', KEYS[1]) "
+                    + "if value then redis.call('RPUSH', KEYS[2], value) return {value} end "
+                    + "return {}", List.class);
+
+    /**
+     * 在redis端查找ARGV[1]在KEYS[1]中第一次出现的下标，按序列化后的字节比较，不存在返回-1
+     * 只在redis不支持LPOS（6.0.6以下）时使用，脚本执行期间会阻塞redis
+     */
+    private static final RedisScript<Long> LIST_INDEX_OF_SCRIPT = new DefaultRedisScript<>(
+            "local size = redis.call('LLEN', KEYS[1]) "
+                    + "for start = 0, size - 1, 1000 do "
+                    + "local page = redis.call('LRANGE', KEYS[1], start, start + 999) "
+                    + "for i = 1, #page do "
+                    + "if page[i] == ARGV[1] then return start + i - 1 end "
+                    + "end "
+                    + "end "
+                    + "return -1", Long.class);
+
+    /**
+     * KEYS[1]的值等于ARGV[1]时才删除，用于释放自己持有的锁
+     */
+    private static final RedisScript<Long> DELETE_IF_EQUALS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+                    + "return 0", Long.class);
+
+    /**
+     * 按页遍历队列时默认的每页元素数量
+     */
+    public static final int DEFAULT_LIST_PAGE_SIZE = 500;
+
+    private int pipelineBatchSize = DEFAULT_PIPELINE_BATCH_SIZE;
+
+    private long scanCount = DEFAULT_SCAN_COUNT;
+
+    private int unlinkBatchSize = DEFAULT_UNLINK_BATCH_SIZE;
+
+    /**
+     * redis 4.0以下不支持UNLINK，返回unknown command后改用DEL
+     */
+    private volatile boolean unlinkSupported = true;
+
+    /**
+     * redis 6.0.6以下不支持LPOS，返回unknown command后改用LIST_INDEX_OF_SCRIPT
+     */
+    private volatile boolean lposSupported = true;
+
+    /**
+     * 当前lettuce版本的CommandType中没有LPOS，需要自己定义命令名
+     */
+    private static final ProtocolKeyword LPOS = new ProtocolKeyword() {
+        private final byte[] bytes = name().getBytes(StandardCharsets.US_ASCII);
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String name() {
+            return "LPOS";
+        }
+    };
+
+    private static final String UTF8_PROBE = "utf8:键:\u00e9";
+
+    private final Map<CachePolicy, RedisSerializer<Object>> policySerializers = new ConcurrentHashMap<>();
+
+    private TypedValueSerializer typedValueSerializer = new TypedValueSerializer();
+
+    private volatile ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    private Executor asyncExecutor = ForkJoinPool.commonPool();
+
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        if (multiGetChunkSize <= 0) {
+            throw new IllegalArgumentException("multiGetChunkSize must be positive");
+        }
+        this.multiGetChunkSize = multiGetChunkSize;
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        if (pipelineBatchSize <= 0) {
+            throw new IllegalArgumentException("pipelineBatchSize must be positive");
+        }
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    public void setScanCount(long scanCount) {
+        if (scanCount <= 0) {
+            throw new IllegalArgumentException("scanCount must be positive");
+        }
+        this.scanCount = scanCount;
+    }
+
+    public void setUnlinkBatchSize(int unlinkBatchSize) {
+        if (unlinkBatchSize <= 0) {
+            throw new IllegalArgumentException("unlinkBatchSize must be positive");
+        }
+        this.unlinkBatchSize = unlinkBatchSize;
+    }
+
+    /**
+     * 需要读到最新写入的操作（如填充本地缓存、加载锁、代数）使用的RedisService，读写分离时为主节点，其余情况为自身
+     */
+    public RedisService primary() {
+        return this;
+    }
+
+    /**
+     * 替换setTypedObj/getObj(key, Class)使用的序列化器，如需要自定义ObjectMapper时
+     */
+    public void setTypedValueSerializer(TypedValueSerializer typedValueSerializer) {
+        this.typedValueSerializer = typedValueSerializer;
+    }
+
 
     /**
      * 普通缓存放入
@@ -108,6 +299,15 @@ public class RedisService {
 
     }
 
+    /**
+     * 检测redis连接是否可用
+     *
+     * @return redis返回的PONG
+     */
+    public String ping() {
+        return redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+    }
+
     public boolean existsKey(String key) {
         return redisTemplate.hasKey(key);
     }
@@ -153,13 +353,125 @@ public class RedisService {
     }
 
     /**
-     * 删除Key的集合
+     * 查找匹配pattern的所有key
+     * 使用SCAN而不是KEYS，不会阻塞redis，但结果仍会全部放在内存中，key很多时请使用scanKeys
      *
      * @param pattern
      * @return
      */
     public Set<String> findKeys(String pattern) {
-        return redisTemplate.keys(pattern);
+        Set<String> keys = new HashSet<>();
+        try (Cursor<String> cursor = scanKeys(pattern)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing scan cursor", e);
+        }
+        return keys;
+    }
+
+    public Cursor<String> scanKeys(String pattern) {
+        return scanKeys(pattern, scanCount);
+    }
+
+    /**
+     * 通过SCAN游标增量遍历匹配pattern的key，每次向redis取count个左右
+     * 游标占用一个连接，使用完必须close（建议try-with-resources）
+     * SCAN期间新增或删除的key可能遍历不到，同一个key也可能返回多次
+     *
+     * @param pattern 如"prefix:*"
+     * @param count   SCAN的COUNT参数
+     * @return
+     */
+    public Cursor<String> scanKeys(String pattern, long count) {
+        RedisSerializer<?> keySerializer = redisTemplate.getKeySerializer();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(count).build();
+        return redisTemplate.executeWithStickyConnection(connection ->
+                new ConvertingCursor<>(connection.scan(options), raw -> (String) keySerializer.deserialize(raw)));
+    }
+
+    public long deleteKeysByPattern(String pattern) {
+        return deleteKeysByPattern(pattern, null);
+    }
+
+    public long deleteKeysByPattern(String pattern, ScanProgressListener listener) {
+        return deleteKeysByPattern(pattern, scanCount, unlinkBatchSize, listener);
+    }
+
+    /**
+     * 边SCAN边删除匹配pattern的key，每攒够batchSize个执行一次UNLINK
+     * 不使用KEYS，redis不会被长时间阻塞，本地也不会持有全部key
+     *
+     * @param pattern   如"prefix:*"
+     * @param count     SCAN的COUNT参数
+     * @param batchSize 每次UNLINK的最大key数量
+     * @param listener  每批删除后回调进度，可以为null
+     * @return 实际删除的key数量
+     */
+    public long deleteKeysByPattern(String pattern, long count, int batchSize, ScanProgressListener listener) {
+        long scanned = 0;
+        long deleted = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+        try (Cursor<String> cursor = scanKeys(pattern, count)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                scanned++;
+                if (batch.size() >= batchSize) {
+                    deleted += unlinkKeys(batch);
+                    batch.clear();
+                    if (listener != null) {
+                        listener.onProgress(scanned, deleted);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing scan cursor", e);
+        }
+        if (!batch.isEmpty()) {
+            deleted += unlinkKeys(batch);
+        }
+        if (listener != null) {
+            listener.onProgress(scanned, deleted);
+        }
+        logger.debug("deleteKeysByPattern {} scanned: {}, deleted: {}", pattern, scanned, deleted);
+        return deleted;
+    }
+
+    /**
+     * 删除key，优先使用UNLINK，由redis在后台线程释放内存
+     *
+     * @param keys
+     * @return 实际删除的key数量
+     */
+    public long unlinkKeys(Collection<String> keys) {
+        if (unlinkSupported) {
+            try {
+                Long count = redisTemplate.unlink(keys);
+                return count == null ? 0L : count;
+            } catch (DataAccessException e) {
+                if (!isUnknownCommand(e)) {
+                    throw e;
+                }
+                logger.warn("UNLINK not supported, fall back to DEL: {}", e.getMessage());
+                unlinkSupported = false;
+            }
+        }
+        Long count = redisTemplate.delete(keys);
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * redis是否因为不认识该命令而拒绝执行（版本过低），其他错误（连接断开、超时等）不能据此降级
+     */
+    private static boolean isUnknownCommand(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && message.toLowerCase().contains("unknown command")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -193,6 +505,26 @@ public class RedisService {
         redisTemplate.expireAt(key, date);
     }
 
+    /**
+     * 在一次往返中读取对象和剩余过期时间（pipeline发送GET和PTTL）
+     *
+     * @param key
+     * @return
+     */
+    public ExpiringValue getObjWithTtl(String key) {
+        List<Object> results = this.redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.opsForValue().get(key);
+                ops.getExpire(key, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        });
+        Long ttl = (Long) results.get(1);
+        return new ExpiringValue(results.get(0), ttl == null ? -2L : ttl);
+    }
+
     /**
      * 查询key的生命周期
      *
@@ -227,7 +559,273 @@ public class RedisService {
      * @return
      */
     public <T> T getObj(String key, Class<T> returnType) {
-        return (T) this.valueOperations.get(key);
+        return getObj(rawKey(key), returnType);
+    }
+
+    /**
+     * 按value的实际类型写入，不带类型信息，体积更小、读取更快
+     * 只能通过getObj(key, Class)等指定类型的方法读取
+     *
+     * @param key
+     * @param timeout 过期时长，单位毫秒，小于等于0时不过期
+     * @param value
+     */
+    public void setTypedObj(String key, long timeout, Object value) {
+        setTypedObj(rawKey(key), timeout, value);
+    }
+
+    public void setTypedObj(String key, Object value) {
+        setTypedObj(key, NOT_EXPIRE, value);
+    }
+
+    /**
+     * @param serializer 取其中的压缩阈值，见valueSerializer(CachePolicy)；编码固定为按类型写入的JSON
+     */
+    public void setTypedObj(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        setTypedObj(rawKey(key), timeout, value, serializer);
+    }
+
+    /**
+     * key序列化器是否把key按UTF-8编码（RedisConfig中的StringRedisSerializer），
+     * 是时可以用KeyEncoder编码的byte[] key调用以下byte[] key版本的方法
+     */
+    public boolean isUtf8KeySerializer() {
+        RedisSerializer<?> keySerializer = redisTemplate.getKeySerializer();
+        return keySerializer instanceof StringRedisSerializer
+                && Arrays.equals(((StringRedisSerializer) keySerializer).serialize(UTF8_PROBE),
+                UTF8_PROBE.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 以下为byte[] key版本，key需要与key序列化器的结果一致，一般由KeyEncoder编码，省去拼接和编码String
+     *
+     * @param rawKey
+     * @return
+     */
+    public Object getObj(byte[] rawKey) {
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        return raw == null ? null : redisTemplate.getValueSerializer().deserialize(raw);
+    }
+
+    public <T> T getObj(byte[] rawKey, Class<T> returnType) {
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        return deserializeTyped(raw, returnType);
+    }
+
+    public void setObj(byte[] rawKey, Object value) {
+        setObj(rawKey, value, valueSerializer());
+    }
+
+    /**
+     * @param rawKey
+     * @param value
+     * @param serializer 写入使用的序列化器，见valueSerializer(CachePolicy)
+     */
+    public void setObj(byte[] rawKey, Object value, RedisSerializer<Object> serializer) {
+        byte[] rawValue = serializer.serialize(value);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.set(rawKey, rawValue);
+            return null;
+        });
+    }
+
+    /**
+     * @param rawKey
+     * @param timeout 过期时长，单位毫秒
+     * @param value
+     */
+    public void setObj(byte[] rawKey, long timeout, Object value) {
+        setObj(rawKey, timeout, value, valueSerializer());
+    }
+
+    public void setObj(byte[] rawKey, long timeout, Object value, RedisSerializer<Object> serializer) {
+        byte[] rawValue = serializer.serialize(value);
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.set(rawKey, rawValue, Expiration.milliseconds(timeout), RedisStringCommands.SetOption.upsert()));
+    }
+
+    public void setTypedObj(byte[] rawKey, long timeout, Object value) {
+        setTypedObj(rawKey, timeout, value, valueSerializer());
+    }
+
+    public void setTypedObj(byte[] rawKey, long timeout, Object value, RedisSerializer<Object> serializer) {
+        byte[] rawValue = serializeTyped(value, serializer);
+        Expiration expiration = timeout > 0 ? Expiration.milliseconds(timeout) : Expiration.persistent();
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.set(rawKey, rawValue, expiration, RedisStringCommands.SetOption.upsert()));
+    }
+
+    public boolean existsKey(byte[] rawKey) {
+        return Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.exists(rawKey)));
+    }
+
+    public void deleteKey(byte[] rawKey) {
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(rawKey));
+    }
+
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    private RedisSerializer<Object> valueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    /**
+     * 按缓存策略中的编码和压缩阈值写入value的序列化器，策略没有相关设置时返回template的序列化器
+     * 读取总是使用template的序列化器，它能识别所有已注册的编码和压缩格式
+     *
+     * @param policy
+     * @return
+     */
+    public RedisSerializer<Object> valueSerializer(CachePolicy policy) {
+        if (policy == null || !policy.hasSerializationSettings()) {
+            return valueSerializer();
+        }
+        RedisSerializer<Object> serializer = policySerializers.get(policy);
+        if (serializer == null) {
+            serializer = createValueSerializer(policy);
+            policySerializers.put(policy, serializer);
+        }
+        return serializer;
+    }
+
+    private RedisSerializer<Object> createValueSerializer(CachePolicy policy) {
+        RedisSerializer<Object> serializer = valueSerializer();
+        CompressingRedisSerializer compressing = serializer instanceof CompressingRedisSerializer
+                ? (CompressingRedisSerializer) serializer : null;
+        RedisSerializer<Object> delegate = compressing != null ? compressing.getDelegate() : serializer;
+        if (policy.getCodec() != null) {
+            if (!(delegate instanceof CodecRedisSerializer)) {
+                throw new IllegalStateException("Value serializer does not support codecs: " + delegate.getClass().getName());
+            }
+            delegate = ((CodecRedisSerializer) delegate).withWriteCodec(policy.getCodec());
+        }
+        int threshold = policy.getCompressionThreshold() != null ? policy.getCompressionThreshold()
+                : compressing != null ? compressing.getThreshold() : 0;
+        return new CompressingRedisSerializer(delegate, threshold, compressing != null ? compressing.getLevel() : Deflater.BEST_SPEED);
+    }
+
+    private byte[] serializeTyped(Object value, RedisSerializer<Object> serializer) {
+        byte[] raw = typedValueSerializer.serialize(value);
+        return serializer instanceof CompressingRedisSerializer
+                ? ((CompressingRedisSerializer) serializer).compress(raw) : raw;
+    }
+
+    /**
+     * 按类型写入的数据直接反序列化为returnType，其余的仍交给template的序列化器
+     */
+    private <T> T deserializeTyped(byte[] raw, Class<T> returnType) {
+        if (raw == null) {
+            return null;
+        }
+        RedisSerializer<?> valueSerializer = redisTemplate.getValueSerializer();
+        byte[] bytes = valueSerializer instanceof CompressingRedisSerializer
+                ? ((CompressingRedisSerializer) valueSerializer).decompress(raw) : raw;
+        if (typedValueSerializer.isTyped(bytes)) {
+            return typedValueSerializer.deserialize(bytes, returnType);
+        }
+        return (T) valueSerializer.deserialize(bytes);
+    }
+
+    /**
+     * 批量获取对象，key过多时自动拆成多次MGET，避免单个命令阻塞redis过久
+     *
+     * @param keys
+     * @return 与keys顺序一致，不存在的key对应null
+     */
+    public List<Object> multiGet(Collection<String> keys) {
+        List<Object> result = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<String> chunk = new ArrayList<>(Math.min(keys.size(), multiGetChunkSize));
+        for (String key : keys) {
+            chunk.add(key);
+            if (chunk.size() == multiGetChunkSize) {
+                result.addAll(multiGetChunk(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.addAll(multiGetChunk(chunk));
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取对象，按类型写入的数据直接反序列化为returnType
+     *
+     * @param keys
+     * @param returnType
+     * @return 与keys顺序一致，不存在的key对应null
+     */
+    public <T> List<T> multiGet(Collection<String> keys, Class<T> returnType) {
+        List<T> result = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<String> chunk = new ArrayList<>(Math.min(keys.size(), multiGetChunkSize));
+        for (String key : keys) {
+            chunk.add(key);
+            if (chunk.size() == multiGetChunkSize) {
+                result.addAll(multiGetChunk(chunk, returnType));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.addAll(multiGetChunk(chunk, returnType));
+        }
+        return result;
+    }
+
+    private <T> List<T> multiGetChunk(List<String> keys, Class<T> returnType) {
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < rawKeys.length; i++) {
+            rawKeys[i] = rawKey(keys.get(i));
+        }
+        List<byte[]> raws = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKeys));
+        List<T> values = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            values.add(raws == null ? null : deserializeTyped(raws.get(i), returnType));
+        }
+        return values;
+    }
+
+    private List<Object> multiGetChunk(List<String> keys) {
+        List<Object> values = this.valueOperations.multiGet(keys);
+        if (values == null) {
+            // pipeline或事务中调用时返回null
+            values = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                values.add(null);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 读取通过incrementCounter维护的计数器
+     * 计数器以纯文本数字存储，不经过value序列化
+     *
+     * @param key
+     * @return 不存在时返回0
+     */
+    public long getCounter(String key) {
+        byte[] rawKey = rawKey(key);
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        return raw == null ? 0L : Long.parseLong(new String(raw, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 计数器加一（INCR）
+     *
+     * @param key
+     * @return 加一后的值
+     */
+    public long incrementCounter(String key) {
+        Long value = this.valueOperations.increment(key, 1L);
+        return value == null ? 0L : value;
     }
 
     public void setObj(String key, Object value) {
@@ -238,6 +836,107 @@ public class RedisService {
         this.valueOperations.set(key, value, timeout, TimeUnit.MILLISECONDS);
     }
 
+    public void setObj(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        setObj(rawKey(key), timeout, value, serializer);
+    }
+
+    public void setObj(String key, Object value, RedisSerializer<Object> serializer) {
+        setObj(rawKey(key), value, serializer);
+    }
+
+    /**
+     * key不存在时才放入（SET NX PX），一次往返完成判断和写入，多个节点并发调用时也只有一个能成功
+     *
+     * @param key
+     * @param timeout 过期时长，单位毫秒
+     * @param value
+     * @return 放入成功返回true，key已存在返回false
+     */
+    public boolean setObjIfAbsent(String key, long timeout, Object value) {
+        return Boolean.TRUE.equals(this.valueOperations.setIfAbsent(key, value, timeout, TimeUnit.MILLISECONDS));
+    }
+
+    public boolean setObjIfAbsent(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = serializer.serialize(value);
+        return Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.set(rawKey, rawValue, Expiration.milliseconds(timeout), RedisStringCommands.SetOption.ifAbsent())));
+    }
+
+    /**
+     * 值等于value时才删除key，判断和删除在一个lua脚本中完成，用于释放setObjIfAbsent加的锁
+     *
+     * @param key
+     * @param value 按序列化后的字节比较
+     * @return 删除了返回true
+     */
+    public boolean deleteIfValueEquals(String key, Object value) {
+        Long deleted = this.redisTemplate.execute(DELETE_IF_EQUALS_SCRIPT, Collections.singletonList(key), value);
+        return deleted != null && deleted > 0;
+    }
+
+    /**
+     * 批量写入对象，所有过期时长相同
+     *
+     * @param entries key到对象的映射
+     * @param timeout 过期时长，单位毫秒，小于等于0时不过期
+     */
+    public void setObjs(Map<String, ?> entries, long timeout) {
+        setObjs(entries, null, timeout);
+    }
+
+    /**
+     * 批量写入对象，每pipelineBatchSize条SET通过一次pipeline发送，相比逐条setObj省去了大部分网络往返
+     *
+     * @param entries        key到对象的映射
+     * @param timeouts       key到过期时长的映射，单位毫秒，可以为null
+     * @param defaultTimeout timeouts中没有的key使用的过期时长，单位毫秒，小于等于0时不过期
+     */
+    public void setObjs(Map<String, ?> entries, Map<String, Long> timeouts, long defaultTimeout) {
+        setObjs(entries, timeouts, defaultTimeout, valueSerializer());
+    }
+
+    /**
+     * @param serializer 写入使用的序列化器，见valueSerializer(CachePolicy)
+     */
+    public void setObjs(Map<String, ?> entries, Map<String, Long> timeouts, long defaultTimeout,
+                        RedisSerializer<Object> serializer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, ?>> batch = new ArrayList<>(Math.min(entries.size(), pipelineBatchSize));
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            batch.add(entry);
+            if (batch.size() == pipelineBatchSize) {
+                pipelineSet(batch, timeouts, defaultTimeout, serializer);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            pipelineSet(batch, timeouts, defaultTimeout, serializer);
+        }
+    }
+
+    private void pipelineSet(List<Map.Entry<String, ?>> batch, Map<String, Long> timeouts, long defaultTimeout,
+                             RedisSerializer<Object> serializer) {
+        this.redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, ?> entry : batch) {
+                Long timeout = timeouts == null ? null : timeouts.get(entry.getKey());
+                if (timeout == null) {
+                    timeout = defaultTimeout;
+                }
+                byte[] rawKey = rawKey(entry.getKey());
+                byte[] rawValue = serializer.serialize(entry.getValue());
+                if (timeout > 0) {
+                    connection.pSetEx(rawKey, timeout, rawValue);
+                } else {
+                    connection.set(rawKey, rawValue);
+                }
+            }
+            return null;
+        });
+    }
+
     /**
      * 从队列队尾入队
      *
@@ -328,8 +1027,7 @@ public class RedisService {
      * @return
      */
     public Object rPeekObj(String key) {
-        Long size = this.listOperations.size(key);
-        return this.listOperations.index(key, size - 1);
+        return this.listOperations.index(key, -1L);
     }
 
     /**
@@ -340,17 +1038,12 @@ public class RedisService {
      * @return
      */
     public <T> T rPeekObj(String key, Class<T> returnType) {
-        Long size = this.listOperations.size(key);
-        return (T) this.listOperations.index(key, size - 1);
+        return (T) this.listOperations.index(key, -1L);
     }
 
     public List<Object> getList(String key) {
-        Long size = this.listOperations.size(key);
-        if (size > 0) {
-            return this.listOperations.range(key, 0, size);
-        } else {
-            return null;
-        }
+        List<Object> objs = this.listOperations.range(key, 0, -1);
+        return objs == null || objs.isEmpty() ? null : objs;
     }
 
     /**
@@ -361,12 +1054,52 @@ public class RedisService {
      * @return
      */
     public <T> List<T> getList(String key, Class<T> returnType) {
-        Long size = this.listOperations.size(key);
-        if (size > 0) {
-            return (List<T>) this.listOperations.range(key, 0, size);
-        } else {
-            return null;
-        }
+        return (List<T>) getList(key);
+    }
+
+    public Iterator<Object> iterateList(String key) {
+        return iterateList(key, DEFAULT_LIST_PAGE_SIZE);
+    }
+
+    /**
+     * 按页遍历队列，每页一次LRANGE，遍历到时才读取下一页，适合很长的队列
+     * 不是快照：遍历期间队列被修改时，可能重复或遗漏元素
+     *
+     * @param key
+     * @param pageSize 每页元素数量
+     * @return
+     */
+    public Iterator<Object> iterateList(String key, int pageSize) {
+        return new ListPageIterator<>(this.listOperations, key, pageSize);
+    }
+
+    /**
+     * 按页遍历队列
+     * 类型转换由内部做，外部不用强制转换
+     *
+     * @param key
+     * @param pageSize 每页元素数量
+     * @param returnType
+     * @param <T>
+     * @return
+     */
+    public <T> Iterator<T> iterateList(String key, int pageSize, Class<T> returnType) {
+        return new ListPageIterator<>(this.listOperations, key, pageSize);
+    }
+
+    /**
+     * 按页读取队列的Stream，参见iterateList
+     *
+     * @param key
+     * @param pageSize 每页元素数量
+     * @return
+     */
+    public Stream<Object> streamList(String key, int pageSize) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterateList(key, pageSize), Spliterator.ORDERED), false);
+    }
+
+    public <T> Stream<T> streamList(String key, int pageSize, Class<T> returnType) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterateList(key, pageSize, returnType), Spliterator.ORDERED), false);
     }
 
     public Long listSize(String key) {
@@ -384,26 +1117,20 @@ public class RedisService {
      * @return
      */
     public Object lPopAndRightPush(String key) {
-        Object obj = lPopObj(key);
-        if (obj != null) {
-            rPushObj(key, obj);
-        }
-        return obj;
+        return lPopAndRPushToAnother(key, key);
     }
 
     /**
      * 从A队列队首出队，将对应的元素，从B队列队尾入队
+     * 出队和入队在一个lua脚本中原子完成，进程中途退出也不会丢失元素
      *
      * @param sourceKey      原队列
      * @param destinationKey 目标队列
      * @return
      */
     public Object lPopAndRPushToAnother(String sourceKey, String destinationKey) {
-        Object obj = lPopObj(sourceKey);
-        if (obj != null) {
-            rPushObj(destinationKey, obj);
-        }
-        return obj;
+        List<?> result = this.redisTemplate.execute(LPOP_RPUSH_SCRIPT, Arrays.asList(sourceKey, destinationKey));
+        return result == null || result.isEmpty() ? null : result.get(0);
     }
 
     /**
@@ -413,11 +1140,7 @@ public class RedisService {
      * @return
      */
     public <T> T lPopAndRightPush(String key, Class<T> returnType) {
-        Object obj = lPopObj(key);
-        if (obj != null) {
-            rPushObj(key, obj);
-        }
-        return (T) obj;
+        return (T) lPopAndRPushToAnother(key, key);
     }
 
     /**
@@ -428,24 +1151,299 @@ public class RedisService {
      * @return
      */
     public <T> T lPopAndRPushToAnother(String sourceKey, String destinationKey, Class<T> returnType) {
-        Object obj = lPopObj(sourceKey);
-        if (obj != null) {
-            rPushObj(destinationKey, obj);
-        }
-        return (T) obj;
+        return (T) lPopAndRPushToAnother(sourceKey, destinationKey);
+    }
+
+    /**
+     * 从A队列队尾出队，将对应的元素，从B队列队首入队（RPOPLPUSH）
+     *
+     * @param sourceKey      原队列
+     * @param destinationKey 目标队列
+     * @return
+     */
+    public Object rPopAndLPushToAnother(String sourceKey, String destinationKey) {
+        return this.listOperations.rightPopAndLeftPush(sourceKey, destinationKey);
+    }
+
+    /**
+     * 阻塞版的rPopAndLPushToAnother（BRPOPLPUSH），A队列为空时最多等待timeout
+     *
+     * @param sourceKey      原队列
+     * @param destinationKey 目标队列
+     * @param timeout        最长等待时间，单位毫秒，redis按秒取整
+     * @return 超时返回null
+     */
+    public Object bRPopAndLPushToAnother(String sourceKey, String destinationKey, long timeout) {
+        return this.listOperations.rightPopAndLeftPush(sourceKey, destinationKey, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 阻塞式从队列队首出队（BLPOP），队列为空时最多等待timeout
+     *
+     * @param key
+     * @param timeout 最长等待时间，单位毫秒，redis按秒取整
+     * @return 超时返回null
+     */
+    public Object bLPopObj(String key, long timeout) {
+        return this.listOperations.leftPop(key, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 阻塞式从队列队尾出队（BRPOP），队列为空时最多等待timeout
+     *
+     * @param key
+     * @param timeout 最长等待时间，单位毫秒，redis按秒取整
+     * @return 超时返回null
+     */
+    public Object bRPopObj(String key, long timeout) {
+        return this.listOperations.rightPop(key, timeout, TimeUnit.MILLISECONDS);
     }
 
     public Long removeFromList(String key, long count, Object obj) {
         return this.listOperations.remove(key, count, obj);
     }
 
+    /**
+     * 判断list中是否包含某元素，在redis端比较，不会把整个list传回本地
+     *
+     * @param key
+     * @param obj
+     * @return
+     */
     public boolean listContainObj(String key, Object obj) {
-        List<Object> objs = getList(key);
-        if (CollectionUtils.isEmpty(objs)) {
-            return false;
-        } else {
-            return objs.contains(obj);
+        return listIndexOf(key, obj) >= 0;
+    }
+
+    /**
+     * 查找元素在list中第一次出现的下标，在redis端按序列化后的字节比较，只返回下标
+     * 注意：与equals不同，序列化结果不同的对象（如字段顺序不固定的Map）视为不相等
+     *
+     * @param key
+     * @param obj
+     * @return 不存在返回-1
+     */
+    public long listIndexOf(String key, Object obj) {
+        if (lposSupported) {
+            byte[] rawKey = rawKey(key);
+            byte[] rawValue = valueSerializer().serialize(obj);
+            try {
+                Long index = redisTemplate.execute((RedisCallback<Long>) connection -> lpos(connection, rawKey, rawValue));
+                return index == null ? -1L : index;
+            } catch (DataAccessException e) {
+                if (!isUnknownCommand(e)) {
+                    throw e;
+                }
+                logger.warn("LPOS not supported, fall back to script: {}", e.getMessage());
+                lposSupported = false;
+            }
+        }
+        Long index = this.redisTemplate.execute(LIST_INDEX_OF_SCRIPT, Collections.singletonList(key), obj);
+        return index == null ? -1L : index;
+    }
+
+    private static Long lpos(RedisConnection connection, byte[] rawKey, byte[] rawValue) {
+        Object nativeConnection = connection.getNativeConnection();
+        if (nativeConnection instanceof RedisAsyncCommands) {
+            // lettuce的execute只接受CommandType中已有的命令，直接按协议发送
+            RedisCommands<byte[], byte[]> commands = ((RedisAsyncCommands<byte[], byte[]>) nativeConnection).getStatefulConnection().sync();
+            try {
+                return commands.dispatch(LPOS, new IntegerOutput<>(ByteArrayCodec.INSTANCE),
+                        new CommandArgs<>(ByteArrayCodec.INSTANCE).addKey(rawKey).addValue(rawValue));
+            } catch (RuntimeException e) {
+                DataAccessException translated = LettuceConverters.exceptionConverter().convert(e);
+                throw translated != null ? translated : e;
+            }
+        }
+        try {
+            return (Long) connection.execute("LPOS", rawKey, rawValue);
+        } catch (IllegalArgumentException e) {
+            // 驱动不认识该命令时在客户端就会失败，同样按unknown command处理
+            throw new InvalidDataAccessApiUsageException("unknown command LPOS: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 异步操作使用的template，与redisTemplate共用连接工厂和序列化器
+     *
+     * @return 连接工厂不支持响应式（如jedis）时返回null
+     */
+    protected ReactiveRedisTemplate<String, Object> reactiveTemplate() {
+        ReactiveRedisTemplate<String, Object> template = this.reactiveRedisTemplate;
+        if (template == null && redisTemplate.getConnectionFactory() instanceof ReactiveRedisConnectionFactory) {
+            synchronized (this) {
+                template = this.reactiveRedisTemplate;
+                if (template == null) {
+                    RedisSerializationContext<String, Object> context = RedisSerializationContext
+                            .<String, Object>newSerializationContext()
+                            .key((RedisSerializer<String>) redisTemplate.getKeySerializer())
+                            .value((RedisSerializer<Object>) redisTemplate.getValueSerializer())
+                            .hashKey(redisTemplate.getHashKeySerializer())
+                            .hashValue(redisTemplate.getHashValueSerializer())
+                            .build();
+                    template = new ReactiveRedisTemplate<>(
+                            (ReactiveRedisConnectionFactory) redisTemplate.getConnectionFactory(), context);
+                    this.reactiveRedisTemplate = template;
+                }
+            }
+        }
+        return template;
+    }
+
+    /**
+     * 连接工厂不支持异步时，同步调用在该线程池中执行，默认为ForkJoinPool.commonPool()
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * 优先使用驱动的异步连接，不支持时退化为在asyncExecutor中执行同步调用
+     */
+    private <T> CompletableFuture<T> async(Function<ReactiveRedisTemplate<String, Object>, Mono<T>> reactiveCall,
+                                           Supplier<T> blockingCall) {
+        ReactiveRedisTemplate<String, Object> template = reactiveTemplate();
+        if (template == null) {
+            return CompletableFuture.supplyAsync(blockingCall, asyncExecutor);
+        }
+        try {
+            return reactiveCall.apply(template).toFuture();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    public CompletableFuture<Object> getObjAsync(String key) {
+        return async(template -> template.opsForValue().get(key), () -> getObj(key));
+    }
+
+    /**
+     * 异步按类型获取对象，参见getObj(key, Class)
+     */
+    public <T> CompletableFuture<T> getObjAsync(String key, Class<T> returnType) {
+        byte[] rawKey = rawKey(key);
+        return async(template -> template.createMono(connection -> connection.stringCommands().get(ByteBuffer.wrap(rawKey)))
+                        .flatMap(buffer -> Mono.justOrEmpty(deserializeTyped(ByteUtils.getBytes(buffer), returnType))),
+                () -> getObj(key, returnType));
+    }
+
+    public CompletableFuture<Object> getObjAsync(byte[] rawKey) {
+        return async(template -> template.createMono(connection -> connection.stringCommands().get(ByteBuffer.wrap(rawKey)))
+                        .flatMap(buffer -> Mono.justOrEmpty(redisTemplate.getValueSerializer().deserialize(ByteUtils.getBytes(buffer)))),
+                () -> getObj(rawKey));
+    }
+
+    public <T> CompletableFuture<T> getObjAsync(byte[] rawKey, Class<T> returnType) {
+        return async(template -> template.createMono(connection -> connection.stringCommands().get(ByteBuffer.wrap(rawKey)))
+                        .flatMap(buffer -> Mono.justOrEmpty(deserializeTyped(ByteUtils.getBytes(buffer), returnType))),
+                () -> getObj(rawKey, returnType));
+    }
+
+    /**
+     * 异步写入对象
+     *
+     * @param key
+     * @param timeout 过期时长，单位毫秒，小于等于0时不过期
+     * @param value
+     * @return 写入完成时完成
+     */
+    public CompletableFuture<Void> setObjAsync(String key, long timeout, Object value) {
+        return async(template -> (timeout > 0
+                        ? template.opsForValue().set(key, value, Duration.ofMillis(timeout))
+                        : template.opsForValue().set(key, value)).then(),
+                () -> {
+                    if (timeout > 0) {
+                        setObj(key, timeout, value);
+                    } else {
+                        setObj(key, value);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * @param serializer 写入使用的序列化器，见valueSerializer(CachePolicy)
+     */
+    public CompletableFuture<Void> setObjAsync(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        byte[] rawKey = rawKey(key);
+        Expiration expiration = timeout > 0 ? Expiration.milliseconds(timeout) : Expiration.persistent();
+        return async(template -> {
+                    ByteBuffer rawValue = ByteBuffer.wrap(serializer.serialize(value));
+                    return template.createMono(connection -> connection.stringCommands()
+                            .set(ByteBuffer.wrap(rawKey), rawValue, expiration, RedisStringCommands.SetOption.upsert())).then();
+                },
+                () -> {
+                    if (timeout > 0) {
+                        setObj(rawKey, timeout, value, serializer);
+                    } else {
+                        setObj(rawKey, value, serializer);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * 异步批量获取对象，key过多时拆成多个MGET并发发送
+     *
+     * @param keys
+     * @return 与keys顺序一致，不存在的key对应null
+     */
+    public CompletableFuture<List<Object>> multiGetAsync(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        List<CompletableFuture<List<Object>>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(Math.min(keys.size(), multiGetChunkSize));
+        for (String key : keys) {
+            chunk.add(key);
+            if (chunk.size() == multiGetChunkSize) {
+                chunks.add(multiGetChunkAsync(chunk));
+                chunk = new ArrayList<>(multiGetChunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(multiGetChunkAsync(chunk));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<Object> result = new ArrayList<>(keys.size());
+            for (CompletableFuture<List<Object>> future : chunks) {
+                result.addAll(future.join());
+            }
+            return result;
+        });
+    }
+
+    private CompletableFuture<List<Object>> multiGetChunkAsync(List<String> keys) {
+        return async(template -> template.opsForValue().multiGet(keys), () -> multiGetChunk(keys));
+    }
+
+    public CompletableFuture<Long> rPushObjAsync(String key, Object value) {
+        return async(template -> template.opsForList().rightPush(key, value),
+                () -> this.listOperations.rightPush(key, value));
+    }
+
+    public CompletableFuture<Long> lPushObjAsync(String key, Object value) {
+        return async(template -> template.opsForList().leftPush(key, value),
+                () -> this.listOperations.leftPush(key, value));
+    }
+
+    public CompletableFuture<Object> lPopObjAsync(String key) {
+        return async(template -> template.opsForList().leftPop(key), () -> lPopObj(key));
+    }
+
+    public CompletableFuture<Object> rPopObjAsync(String key) {
+        return async(template -> template.opsForList().rightPop(key), () -> rPopObj(key));
+    }
+
+    /**
+     * 异步获取整个队列，参见getList
+     *
+     * @param key
+     * @return 队列不存在或为空时为null
+     */
+    public CompletableFuture<List<Object>> getListAsync(String key) {
+        return async(template -> template.opsForList().range(key, 0, -1).collectList()
+                .filter(list -> !list.isEmpty()), () -> getList(key));
+    }
 }
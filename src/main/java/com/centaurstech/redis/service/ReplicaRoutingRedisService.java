@@ -0,0 +1,391 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.domain.ExpiringValue;
+import com.centaurstech.redis.domain.LatencyHistogram;
+import com.centaurstech.redis.serializer.TypedValueSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 读写分离的RedisService：写操作和其他操作仍访问主节点，读操作（getObj、existsKey、getList、peek、multiGet等）
+ * 轮流访问从节点，从节点连接失败时改读主节点。从节点有复制延迟，刚写入的数据可能读不到或读到旧值。
+ * <p>
+ * 开启hedged read后，getObj、multiGet、getList超过最近读延迟的指定百分位（如p95）仍未返回时，再向另一个节点
+ * （下一个从节点，只有一个从节点时为主节点）发出同样的请求，取先返回的结果，单个节点变慢时不会拖慢p99。
+ * 两个请求都通过异步连接发出，调用线程只等待结果，不占用额外的线程。
+ */
+public class ReplicaRoutingRedisService extends RedisService {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingRedisService.class);
+
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95.0;
+    public static final long DEFAULT_HEDGE_MIN_DELAY_MILLIS = 1L;
+    /**
+     * 样本不足时使用的hedge延迟
+     */
+    private static final long INITIAL_HEDGE_DELAY_MICROS = 10000L;
+    private static final long HEDGE_DELAY_REFRESH_MILLIS = 1000L;
+    private static final long HEDGE_WINDOW_MILLIS = 10000L;
+    private static final long HEDGE_MIN_SAMPLES = 100L;
+
+    private final RedisService primary;
+    private final List<RedisService> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private volatile boolean hedgeEnabled = false;
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private volatile long hedgeMinDelayMicros = TimeUnit.MILLISECONDS.toMicros(DEFAULT_HEDGE_MIN_DELAY_MILLIS);
+    private volatile long hedgeDelayMicros = INITIAL_HEDGE_DELAY_MICROS;
+    private final AtomicLong hedgeDelayComputedAt = new AtomicLong();
+    private volatile long windowStartedAt = System.currentTimeMillis();
+    private volatile LatencyHistogram currentWindow = new LatencyHistogram();
+    private volatile LatencyHistogram previousWindow = new LatencyHistogram();
+    private final LongAdder hedgedReads = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * @param primary  主节点的RedisTemplate
+     * @param replicas 从节点名（一般为host:port）到从节点的RedisTemplate，序列化器配置需要与主节点相同
+     */
+    public ReplicaRoutingRedisService(RedisTemplate<String, Object> primary, Map<String, RedisTemplate<String, Object>> replicas) {
+        super(primary);
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.primary = new RedisService(primary);
+        for (RedisTemplate<String, Object> replica : replicas.values()) {
+            this.replicas.add(new RedisService(replica));
+        }
+    }
+
+    /**
+     * 开启hedged read
+     *
+     * @param percentile     超过最近读延迟的该百分位（0~100）时发出第二个请求
+     * @param minDelayMillis 发出第二个请求前至少等待的时间，避免延迟很低时几乎每次都发两个请求
+     */
+    public void enableHedgedReads(double percentile, long minDelayMillis) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        this.hedgePercentile = percentile;
+        this.hedgeMinDelayMicros = TimeUnit.MILLISECONDS.toMicros(minDelayMillis);
+        this.hedgeEnabled = true;
+    }
+
+    public void enableHedgedReads() {
+        enableHedgedReads(DEFAULT_HEDGE_PERCENTILE, DEFAULT_HEDGE_MIN_DELAY_MILLIS);
+    }
+
+    public void disableHedgedReads() {
+        this.hedgeEnabled = false;
+    }
+
+    /**
+     * 当前的hedge延迟，单位微秒
+     */
+    public long getHedgeDelayMicros() {
+        return hedgeDelayMicros;
+    }
+
+    /**
+     * 发出了第二个请求的读次数
+     */
+    public long getHedgedReads() {
+        return hedgedReads.sum();
+    }
+
+    /**
+     * 第二个请求先返回的次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    private RedisService nextReplica() {
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * hedge请求的目标：另一个从节点，没有时为主节点
+     */
+    private RedisService otherNode(RedisService node) {
+        if (replicas.size() == 1) {
+            return primary;
+        }
+        int index = replicas.indexOf(node);
+        return replicas.get((index + 1) % replicas.size());
+    }
+
+    @Override
+    public RedisService primary() {
+        return primary;
+    }
+
+    private <T> T read(Function<RedisService, T> call) {
+        RedisService replica = nextReplica();
+        try {
+            return call.apply(replica);
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isConnectionFailure(e)) {
+                throw e;
+            }
+            logger.debug("Replica read failed, read primary instead: {}", e.getMessage());
+            return call.apply(primary);
+        }
+    }
+
+    /**
+     * 未开启hedge时与read相同；开启时第一个请求超过hedge延迟未返回，或因连接问题失败时，向另一个节点再发一次
+     *
+     * @param call      同步读
+     * @param asyncCall 同样的异步读
+     */
+    private <T> T read(Function<RedisService, T> call, Function<RedisService, CompletableFuture<T>> asyncCall) {
+        if (!hedgeEnabled) {
+            return read(call);
+        }
+        RedisService first = nextReplica();
+        CompletableFuture<T> firstAttempt = attempt(first, asyncCall);
+        try {
+            return firstAttempt.get(hedgeDelay(), TimeUnit.MICROSECONDS);
+        } catch (TimeoutException e) {
+            hedgedReads.increment();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (!RedisCircuitBreaker.isConnectionFailure(cause)) {
+                return join(firstAttempt);
+            }
+            logger.debug("Replica read failed, hedge immediately: {}", cause.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return join(firstAttempt);
+        }
+        CompletableFuture<T> secondAttempt = attempt(otherNode(first), asyncCall);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        firstAttempt.whenComplete((value, error) -> complete(result, value, error, failures, false));
+        secondAttempt.whenComplete((value, error) -> complete(result, value, error, failures, true));
+        return join(result);
+    }
+
+    private <T> CompletableFuture<T> attempt(RedisService node, Function<RedisService, CompletableFuture<T>> asyncCall) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = asyncCall.apply(node);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.whenComplete((value, error) -> {
+            if (error == null) {
+                recordLatency(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        });
+    }
+
+    private <T> void complete(CompletableFuture<T> result, T value, Throwable error, AtomicInteger failures, boolean hedge) {
+        if (error == null) {
+            if (result.complete(value) && hedge) {
+                hedgeWins.increment();
+            }
+        } else if (failures.incrementAndGet() == 2) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void recordLatency(long micros) {
+        long now = System.currentTimeMillis();
+        if (now - windowStartedAt >= HEDGE_WINDOW_MILLIS) {
+            synchronized (this) {
+                if (now - windowStartedAt >= HEDGE_WINDOW_MILLIS) {
+                    previousWindow = currentWindow;
+                    currentWindow = new LatencyHistogram();
+                    windowStartedAt = now;
+                }
+            }
+        }
+        currentWindow.record(micros);
+    }
+
+    /**
+     * 按最近的读延迟计算hedge延迟，每秒最多计算一次；当前窗口样本不足时使用上一个窗口
+     */
+    private long hedgeDelay() {
+        long now = System.currentTimeMillis();
+        long computedAt = hedgeDelayComputedAt.get();
+        if (now - computedAt >= HEDGE_DELAY_REFRESH_MILLIS && hedgeDelayComputedAt.compareAndSet(computedAt, now)) {
+            LatencyHistogram histogram = currentWindow.getCount() >= HEDGE_MIN_SAMPLES ? currentWindow : previousWindow;
+            if (histogram.getCount() >= HEDGE_MIN_SAMPLES) {
+                hedgeDelayMicros = Math.max(hedgeMinDelayMicros, histogram.getValueAtPercentile(hedgePercentile));
+            }
+        }
+        return hedgeDelayMicros;
+    }
+
+    @Override
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        super.setMultiGetChunkSize(multiGetChunkSize);
+        primary.setMultiGetChunkSize(multiGetChunkSize);
+        for (RedisService replica : replicas) {
+            replica.setMultiGetChunkSize(multiGetChunkSize);
+        }
+    }
+
+    @Override
+    public void setTypedValueSerializer(TypedValueSerializer typedValueSerializer) {
+        super.setTypedValueSerializer(typedValueSerializer);
+        primary.setTypedValueSerializer(typedValueSerializer);
+        for (RedisService replica : replicas) {
+            replica.setTypedValueSerializer(typedValueSerializer);
+        }
+    }
+
+    @Override
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        super.setAsyncExecutor(asyncExecutor);
+        primary.setAsyncExecutor(asyncExecutor);
+        for (RedisService replica : replicas) {
+            replica.setAsyncExecutor(asyncExecutor);
+        }
+    }
+
+    @Override
+    public boolean existsKey(String key) {
+        return read(node -> node.existsKey(key));
+    }
+
+    @Override
+    public boolean existsKey(byte[] rawKey) {
+        return read(node -> node.existsKey(rawKey));
+    }
+
+    @Override
+    public ExpiringValue getObjWithTtl(String key) {
+        return read(node -> node.getObjWithTtl(key));
+    }
+
+    @Override
+    public Object getObj(String key) {
+        return read(node -> node.getObj(key), node -> node.getObjAsync(key));
+    }
+
+    @Override
+    public <T> T getObj(String key, Class<T> returnType) {
+        return read(node -> node.getObj(key, returnType), node -> node.getObjAsync(key, returnType));
+    }
+
+    @Override
+    public Object getObj(byte[] rawKey) {
+        return read(node -> node.getObj(rawKey), node -> node.getObjAsync(rawKey));
+    }
+
+    @Override
+    public <T> T getObj(byte[] rawKey, Class<T> returnType) {
+        return read(node -> node.getObj(rawKey, returnType), node -> node.getObjAsync(rawKey, returnType));
+    }
+
+    @Override
+    public List<Object> multiGet(Collection<String> keys) {
+        return read(node -> node.multiGet(keys), node -> node.multiGetAsync(keys));
+    }
+
+    @Override
+    public <T> List<T> multiGet(Collection<String> keys, Class<T> returnType) {
+        return read(node -> node.multiGet(keys, returnType));
+    }
+
+    @Override
+    public long getCounter(String key) {
+        return read(node -> node.getCounter(key));
+    }
+
+    @Override
+    public Object lPeekObj(String key) {
+        return read(node -> node.lPeekObj(key));
+    }
+
+    @Override
+    public <T> T lPeekObj(String key, Class<T> returnType) {
+        return read(node -> node.lPeekObj(key, returnType));
+    }
+
+    @Override
+    public Object rPeekObj(String key) {
+        return read(node -> node.rPeekObj(key));
+    }
+
+    @Override
+    public <T> T rPeekObj(String key, Class<T> returnType) {
+        return read(node -> node.rPeekObj(key, returnType));
+    }
+
+    @Override
+    public List<Object> getList(String key) {
+        return read(node -> node.getList(key), node -> node.getListAsync(key));
+    }
+
+    @Override
+    public <T> List<T> getList(String key, Class<T> returnType) {
+        return read(node -> node.getList(key, returnType));
+    }
+
+    @Override
+    public Long listSize(String key) {
+        return read(node -> node.listSize(key));
+    }
+
+    /**
+     * 异步读只路由到从节点，不做hedge
+     */
+    @Override
+    public CompletableFuture<Object> getObjAsync(String key) {
+        return nextReplica().getObjAsync(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getObjAsync(String key, Class<T> returnType) {
+        return nextReplica().getObjAsync(key, returnType);
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> multiGetAsync(Collection<String> keys) {
+        return nextReplica().multiGetAsync(keys);
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> getListAsync(String key) {
+        return nextReplica().getListAsync(key);
+    }
+}
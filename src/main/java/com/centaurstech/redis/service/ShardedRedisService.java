@@ -0,0 +1,886 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.domain.ConsistentHashRing;
+import com.centaurstech.redis.domain.ExpiringValue;
+import com.centaurstech.redis.interfaces.ScanProgressListener;
+import com.centaurstech.redis.serializer.TypedValueSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 客户端分片的RedisService：每个分片是一个独立的redis实例，key通过一致性哈希环（带虚拟节点）决定所属分片
+ * 可以直接交给CacheService使用，单key操作只访问一个分片；批量删除、批量读取、批量写入和按pattern扫描
+ * 按分片拆开并行执行。增加或移除分片时只有约1/N的key改变归属，改变归属的key相当于缓存未命中。
+ * <p>
+ * 两个key的操作（rename、队列间移动元素）要求两个key在同一分片，可以用"{tag}"让它们落在一起；
+ * 队列间移动元素跨分片时退化为先出队再入队，不是原子的。
+ * 失效广播（pub/sub）和熔断器的PING使用第一个分片，PING任一分片失败即视为redis不可用。
+ */
+public class ShardedRedisService extends RedisService {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedRedisService.class);
+
+    private final ConsistentHashRing<RedisService> ring;
+    private Executor shardExecutor = ForkJoinPool.commonPool();
+
+    /**
+     * @param shards 分片名（一般为host:port，决定分片在环上的位置）到该分片的RedisTemplate，
+     *               各分片的序列化器配置需要相同
+     */
+    public ShardedRedisService(Map<String, RedisTemplate<String, Object>> shards) {
+        this(shards, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedRedisService(Map<String, RedisTemplate<String, Object>> shards, int virtualNodes) {
+        super(firstShard(shards));
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        for (Map.Entry<String, RedisTemplate<String, Object>> entry : shards.entrySet()) {
+            this.ring.add(entry.getKey(), new RedisService(entry.getValue()));
+        }
+    }
+
+    private static RedisTemplate<String, Object> firstShard(Map<String, RedisTemplate<String, Object>> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        return shards.values().iterator().next();
+    }
+
+    /**
+     * 运行时增加分片，约1/N的key改为由新分片负责
+     */
+    public void addShard(String name, RedisTemplate<String, Object> redisTemplate) {
+        this.ring.add(name, new RedisService(redisTemplate));
+    }
+
+    /**
+     * 运行时移除分片，该分片上的key改为由环上的下一个分片负责，原有数据不会迁移
+     */
+    public void removeShard(String name) {
+        if (this.ring.size() == 1 && this.ring.getNodes().containsKey(name)) {
+            throw new IllegalStateException("Cannot remove the last shard");
+        }
+        this.ring.remove(name);
+    }
+
+    /**
+     * 分片名到分片，按加入顺序
+     */
+    public Map<String, RedisService> getShards() {
+        return this.ring.getNodes();
+    }
+
+    public RedisService shard(String key) {
+        return this.ring.get(key);
+    }
+
+    public RedisService shard(byte[] rawKey) {
+        return this.ring.get(rawKey);
+    }
+
+    /**
+     * 多个分片并行执行时使用的线程池，默认为ForkJoinPool.commonPool()
+     */
+    public void setShardExecutor(Executor shardExecutor) {
+        this.shardExecutor = shardExecutor;
+    }
+
+    /**
+     * 在每个分片上执行，第一个分片在当前线程执行，其余的在shardExecutor中并行
+     *
+     * @return 与shards顺序一致的结果
+     */
+    private <S, R> List<R> fanOut(Collection<S> shards, Function<S, R> call) {
+        if (shards.size() == 1) {
+            List<R> results = new ArrayList<>(1);
+            results.add(call.apply(shards.iterator().next()));
+            return results;
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        S first = null;
+        for (S shard : shards) {
+            if (first == null) {
+                first = shard;
+                futures.add(null);
+            } else {
+                S current = shard;
+                futures.add(CompletableFuture.supplyAsync(() -> call.apply(current), shardExecutor));
+            }
+        }
+        R firstResult = call.apply(first);
+        List<R> results = new ArrayList<>(shards.size());
+        results.add(firstResult);
+        for (int i = 1; i < futures.size(); i++) {
+            results.add(join(futures.get(i)));
+        }
+        return results;
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 按所属分片分组，保持每组内的原有顺序
+     */
+    private Map<RedisService, List<String>> groupByShard(Collection<String> keys) {
+        Map<RedisService, List<String>> groups = new LinkedHashMap<>();
+        for (String key : keys) {
+            groups.computeIfAbsent(shard(key), ignored -> new ArrayList<>()).add(key);
+        }
+        return groups;
+    }
+
+    private RedisService sameShard(String key, String otherKey) {
+        RedisService shard = shard(key);
+        if (shard != shard(otherKey)) {
+            throw new IllegalArgumentException("Keys " + key + " and " + otherKey
+                    + " are on different shards, use a hash tag such as {tag} to keep them together");
+        }
+        return shard;
+    }
+
+    @Override
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        super.setMultiGetChunkSize(multiGetChunkSize);
+        for (RedisService shard : ring.nodes()) {
+            shard.setMultiGetChunkSize(multiGetChunkSize);
+        }
+    }
+
+    @Override
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        super.setPipelineBatchSize(pipelineBatchSize);
+        for (RedisService shard : ring.nodes()) {
+            shard.setPipelineBatchSize(pipelineBatchSize);
+        }
+    }
+
+    @Override
+    public void setScanCount(long scanCount) {
+        super.setScanCount(scanCount);
+        for (RedisService shard : ring.nodes()) {
+            shard.setScanCount(scanCount);
+        }
+    }
+
+    @Override
+    public void setUnlinkBatchSize(int unlinkBatchSize) {
+        super.setUnlinkBatchSize(unlinkBatchSize);
+        for (RedisService shard : ring.nodes()) {
+            shard.setUnlinkBatchSize(unlinkBatchSize);
+        }
+    }
+
+    @Override
+    public void setTypedValueSerializer(TypedValueSerializer typedValueSerializer) {
+        super.setTypedValueSerializer(typedValueSerializer);
+        for (RedisService shard : ring.nodes()) {
+            shard.setTypedValueSerializer(typedValueSerializer);
+        }
+    }
+
+    @Override
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        super.setAsyncExecutor(asyncExecutor);
+        for (RedisService shard : ring.nodes()) {
+            shard.setAsyncExecutor(asyncExecutor);
+        }
+    }
+
+    @Override
+    public boolean set(String key, Object value) {
+        return shard(key).set(key, value);
+    }
+
+    @Override
+    public boolean set(String key, Object value, long time) {
+        return shard(key).set(key, value, time);
+    }
+
+    /**
+     * PING所有分片
+     */
+    @Override
+    public String ping() {
+        List<String> results = fanOut(ring.nodes(), RedisService::ping);
+        return results.get(0);
+    }
+
+    @Override
+    public boolean existsKey(String key) {
+        return shard(key).existsKey(key);
+    }
+
+    @Override
+    public void renameKey(String oldKey, String newKey) {
+        sameShard(oldKey, newKey).renameKey(oldKey, newKey);
+    }
+
+    @Override
+    public boolean renameKeyNotExist(String oldKey, String newKey) {
+        return sameShard(oldKey, newKey).renameKeyNotExist(oldKey, newKey);
+    }
+
+    @Override
+    public void deleteKey(String key) {
+        shard(key).deleteKey(key);
+    }
+
+    @Override
+    public void deleteKey(String... keys) {
+        deleteKey(Arrays.asList(keys));
+    }
+
+    @Override
+    public Long deleteKey(Collection<String> keys) {
+        Map<RedisService, List<String>> groups = groupByShard(keys);
+        long deleted = 0;
+        for (Long count : fanOut(groups.entrySet(), entry -> entry.getKey().deleteKey(entry.getValue()))) {
+            deleted += count == null ? 0L : count;
+        }
+        return deleted;
+    }
+
+    @Override
+    public long unlinkKeys(Collection<String> keys) {
+        Map<RedisService, List<String>> groups = groupByShard(keys);
+        long deleted = 0;
+        for (Long count : fanOut(groups.entrySet(), entry -> entry.getKey().unlinkKeys(entry.getValue()))) {
+            deleted += count;
+        }
+        return deleted;
+    }
+
+    /**
+     * 并行SCAN所有分片
+     */
+    @Override
+    public Set<String> findKeys(String pattern) {
+        Set<String> keys = new HashSet<>();
+        for (Set<String> shardKeys : fanOut(ring.nodes(), shard -> shard.findKeys(pattern))) {
+            keys.addAll(shardKeys);
+        }
+        return keys;
+    }
+
+    /**
+     * 依次遍历每个分片的SCAN游标，同一时间只占用一个连接
+     */
+    @Override
+    public Cursor<String> scanKeys(String pattern, long count) {
+        return new ShardedCursor(ring.nodes(), shard -> shard.scanKeys(pattern, count));
+    }
+
+    /**
+     * 所有分片并行边扫描边删除，listener收到的是所有分片累计的进度
+     */
+    @Override
+    public long deleteKeysByPattern(String pattern, long count, int batchSize, ScanProgressListener listener) {
+        AtomicLong scanned = new AtomicLong();
+        AtomicLong deleted = new AtomicLong();
+        long total = 0;
+        for (Long shardDeleted : fanOut(ring.nodes(), shard -> {
+            long[] last = new long[2];
+            return shard.deleteKeysByPattern(pattern, count, batchSize, listener == null ? null : (shardScanned, shardDeleted) -> {
+                long totalScanned = scanned.addAndGet(shardScanned - last[0]);
+                long totalDeleted = deleted.addAndGet(shardDeleted - last[1]);
+                last[0] = shardScanned;
+                last[1] = shardDeleted;
+                synchronized (listener) {
+                    listener.onProgress(totalScanned, totalDeleted);
+                }
+            });
+        })) {
+            total += shardDeleted;
+        }
+        return total;
+    }
+
+    @Override
+    public void expireKey(String key, long time, TimeUnit timeUnit) {
+        shard(key).expireKey(key, time, timeUnit);
+    }
+
+    @Override
+    public void expireKeyAt(String key, Date date) {
+        shard(key).expireKeyAt(key, date);
+    }
+
+    @Override
+    public ExpiringValue getObjWithTtl(String key) {
+        return shard(key).getObjWithTtl(key);
+    }
+
+    @Override
+    public long getKeyExpire(String key, TimeUnit timeUnit) {
+        return shard(key).getKeyExpire(key, timeUnit);
+    }
+
+    @Override
+    public void persistKey(String key) {
+        shard(key).persistKey(key);
+    }
+
+    @Override
+    public Object getObj(String key) {
+        return shard(key).getObj(key);
+    }
+
+    @Override
+    public <T> T getObj(String key, Class<T> returnType) {
+        return shard(key).getObj(key, returnType);
+    }
+
+    @Override
+    public void setTypedObj(String key, long timeout, Object value) {
+        shard(key).setTypedObj(key, timeout, value);
+    }
+
+    @Override
+    public void setTypedObj(String key, Object value) {
+        shard(key).setTypedObj(key, value);
+    }
+
+    @Override
+    public void setTypedObj(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        shard(key).setTypedObj(key, timeout, value, serializer);
+    }
+
+    @Override
+    public Object getObj(byte[] rawKey) {
+        return shard(rawKey).getObj(rawKey);
+    }
+
+    @Override
+    public <T> T getObj(byte[] rawKey, Class<T> returnType) {
+        return shard(rawKey).getObj(rawKey, returnType);
+    }
+
+    @Override
+    public void setObj(byte[] rawKey, Object value) {
+        shard(rawKey).setObj(rawKey, value);
+    }
+
+    @Override
+    public void setObj(byte[] rawKey, Object value, RedisSerializer<Object> serializer) {
+        shard(rawKey).setObj(rawKey, value, serializer);
+    }
+
+    @Override
+    public void setObj(byte[] rawKey, long timeout, Object value) {
+        shard(rawKey).setObj(rawKey, timeout, value);
+    }
+
+    @Override
+    public void setObj(byte[] rawKey, long timeout, Object value, RedisSerializer<Object> serializer) {
+        shard(rawKey).setObj(rawKey, timeout, value, serializer);
+    }
+
+    @Override
+    public void setTypedObj(byte[] rawKey, long timeout, Object value) {
+        shard(rawKey).setTypedObj(rawKey, timeout, value);
+    }
+
+    @Override
+    public void setTypedObj(byte[] rawKey, long timeout, Object value, RedisSerializer<Object> serializer) {
+        shard(rawKey).setTypedObj(rawKey, timeout, value, serializer);
+    }
+
+    @Override
+    public boolean existsKey(byte[] rawKey) {
+        return shard(rawKey).existsKey(rawKey);
+    }
+
+    @Override
+    public void deleteKey(byte[] rawKey) {
+        shard(rawKey).deleteKey(rawKey);
+    }
+
+    @Override
+    public List<Object> multiGet(Collection<String> keys) {
+        return multiGet(keys, (shard, shardKeys) -> shard.multiGet(shardKeys));
+    }
+
+    @Override
+    public <T> List<T> multiGet(Collection<String> keys, Class<T> returnType) {
+        return multiGet(keys, (shard, shardKeys) -> shard.multiGet(shardKeys, returnType));
+    }
+
+    /**
+     * 按分片拆开并行MGET，再按keys的顺序合并
+     */
+    private <T> List<T> multiGet(Collection<String> keys, ShardMultiGet<T> call) {
+        List<T> result = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return result;
+        }
+        Map<RedisService, List<Integer>> positions = new LinkedHashMap<>();
+        Map<RedisService, List<String>> groups = new LinkedHashMap<>();
+        int index = 0;
+        for (String key : keys) {
+            RedisService shard = shard(key);
+            groups.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(key);
+            positions.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(index++);
+            result.add(null);
+        }
+        List<RedisService> shards = new ArrayList<>(groups.keySet());
+        List<List<T>> values = fanOut(shards, shard -> call.multiGet(shard, groups.get(shard)));
+        for (int i = 0; i < shards.size(); i++) {
+            List<Integer> shardPositions = positions.get(shards.get(i));
+            List<T> shardValues = values.get(i);
+            for (int j = 0; j < shardPositions.size(); j++) {
+                result.set(shardPositions.get(j), shardValues.get(j));
+            }
+        }
+        return result;
+    }
+
+    private interface ShardMultiGet<T> {
+        List<T> multiGet(RedisService shard, List<String> keys);
+    }
+
+    @Override
+    public long getCounter(String key) {
+        return shard(key).getCounter(key);
+    }
+
+    @Override
+    public long incrementCounter(String key) {
+        return shard(key).incrementCounter(key);
+    }
+
+    @Override
+    public void setObj(String key, Object value) {
+        shard(key).setObj(key, value);
+    }
+
+    @Override
+    public void setObj(String key, long timeout, Object value) {
+        shard(key).setObj(key, timeout, value);
+    }
+
+    @Override
+    public void setObj(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        shard(key).setObj(key, timeout, value, serializer);
+    }
+
+    @Override
+    public void setObj(String key, Object value, RedisSerializer<Object> serializer) {
+        shard(key).setObj(key, value, serializer);
+    }
+
+    @Override
+    public boolean setObjIfAbsent(String key, long timeout, Object value) {
+        return shard(key).setObjIfAbsent(key, timeout, value);
+    }
+
+    @Override
+    public boolean setObjIfAbsent(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        return shard(key).setObjIfAbsent(key, timeout, value, serializer);
+    }
+
+    @Override
+    public boolean deleteIfValueEquals(String key, Object value) {
+        return shard(key).deleteIfValueEquals(key, value);
+    }
+
+    /**
+     * 按分片拆开，各分片并行pipeline写入
+     */
+    @Override
+    public void setObjs(Map<String, ?> entries, Map<String, Long> timeouts, long defaultTimeout,
+                        RedisSerializer<Object> serializer) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<RedisService, Map<String, Object>> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            groups.computeIfAbsent(shard(entry.getKey()), ignored -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        fanOut(groups.entrySet(), entry -> {
+            entry.getKey().setObjs(entry.getValue(), timeouts, defaultTimeout, serializer);
+            return null;
+        });
+    }
+
+    @Override
+    public void rPushObj(String key, Object value) {
+        shard(key).rPushObj(key, value);
+    }
+
+    @Override
+    public void lPushObj(String key, Object value) {
+        shard(key).lPushObj(key, value);
+    }
+
+    @Override
+    public Object lPopObj(String key) {
+        return shard(key).lPopObj(key);
+    }
+
+    @Override
+    public <T> T lPopObj(String key, Class<T> returnType) {
+        return shard(key).lPopObj(key, returnType);
+    }
+
+    @Override
+    public Object rPopObj(String key) {
+        return shard(key).rPopObj(key);
+    }
+
+    @Override
+    public <T> T rPopObj(String key, Class<T> returnType) {
+        return shard(key).rPopObj(key, returnType);
+    }
+
+    @Override
+    public Object lPeekObj(String key) {
+        return shard(key).lPeekObj(key);
+    }
+
+    @Override
+    public <T> T lPeekObj(String key, Class<T> returnType) {
+        return shard(key).lPeekObj(key, returnType);
+    }
+
+    @Override
+    public Object rPeekObj(String key) {
+        return shard(key).rPeekObj(key);
+    }
+
+    @Override
+    public <T> T rPeekObj(String key, Class<T> returnType) {
+        return shard(key).rPeekObj(key, returnType);
+    }
+
+    @Override
+    public List<Object> getList(String key) {
+        return shard(key).getList(key);
+    }
+
+    @Override
+    public <T> List<T> getList(String key, Class<T> returnType) {
+        return shard(key).getList(key, returnType);
+    }
+
+    @Override
+    public Iterator<Object> iterateList(String key) {
+        return shard(key).iterateList(key);
+    }
+
+    @Override
+    public Iterator<Object> iterateList(String key, int pageSize) {
+        return shard(key).iterateList(key, pageSize);
+    }
+
+    @Override
+    public <T> Iterator<T> iterateList(String key, int pageSize, Class<T> returnType) {
+        return shard(key).iterateList(key, pageSize, returnType);
+    }
+
+    @Override
+    public Stream<Object> streamList(String key, int pageSize) {
+        return shard(key).streamList(key, pageSize);
+    }
+
+    @Override
+    public <T> Stream<T> streamList(String key, int pageSize, Class<T> returnType) {
+        return shard(key).streamList(key, pageSize, returnType);
+    }
+
+    @Override
+    public Long listSize(String key) {
+        return shard(key).listSize(key);
+    }
+
+    @Override
+    public void setList(String key, List<Object> objs) {
+        shard(key).setList(key, objs);
+    }
+
+    @Override
+    public Object lPopAndRightPush(String key) {
+        return shard(key).lPopAndRightPush(key);
+    }
+
+    @Override
+    public <T> T lPopAndRightPush(String key, Class<T> returnType) {
+        return shard(key).lPopAndRightPush(key, returnType);
+    }
+
+    @Override
+    public Object lPopAndRPushToAnother(String sourceKey, String destinationKey) {
+        RedisService source = shard(sourceKey);
+        RedisService destination = shard(destinationKey);
+        if (source == destination) {
+            return source.lPopAndRPushToAnother(sourceKey, destinationKey);
+        }
+        Object value = source.lPopObj(sourceKey);
+        if (value != null) {
+            destination.rPushObj(destinationKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T lPopAndRPushToAnother(String sourceKey, String destinationKey, Class<T> returnType) {
+        RedisService source = shard(sourceKey);
+        RedisService destination = shard(destinationKey);
+        if (source == destination) {
+            return source.lPopAndRPushToAnother(sourceKey, destinationKey, returnType);
+        }
+        Object value = source.lPopObj(sourceKey);
+        if (value != null) {
+            destination.rPushObj(destinationKey, value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    public Object rPopAndLPushToAnother(String sourceKey, String destinationKey) {
+        RedisService source = shard(sourceKey);
+        RedisService destination = shard(destinationKey);
+        if (source == destination) {
+            return source.rPopAndLPushToAnother(sourceKey, destinationKey);
+        }
+        Object value = source.rPopObj(sourceKey);
+        if (value != null) {
+            destination.lPushObj(destinationKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object bRPopAndLPushToAnother(String sourceKey, String destinationKey, long timeout) {
+        RedisService source = shard(sourceKey);
+        RedisService destination = shard(destinationKey);
+        if (source == destination) {
+            return source.bRPopAndLPushToAnother(sourceKey, destinationKey, timeout);
+        }
+        Object value = source.bRPopObj(sourceKey, timeout);
+        if (value != null) {
+            destination.lPushObj(destinationKey, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object bLPopObj(String key, long timeout) {
+        return shard(key).bLPopObj(key, timeout);
+    }
+
+    @Override
+    public Object bRPopObj(String key, long timeout) {
+        return shard(key).bRPopObj(key, timeout);
+    }
+
+    @Override
+    public Long removeFromList(String key, long count, Object obj) {
+        return shard(key).removeFromList(key, count, obj);
+    }
+
+    @Override
+    public boolean listContainObj(String key, Object obj) {
+        return shard(key).listContainObj(key, obj);
+    }
+
+    @Override
+    public long listIndexOf(String key, Object obj) {
+        return shard(key).listIndexOf(key, obj);
+    }
+
+    @Override
+    public CompletableFuture<Object> getObjAsync(String key) {
+        return shard(key).getObjAsync(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getObjAsync(String key, Class<T> returnType) {
+        return shard(key).getObjAsync(key, returnType);
+    }
+
+    @Override
+    public CompletableFuture<Object> getObjAsync(byte[] rawKey) {
+        return shard(rawKey).getObjAsync(rawKey);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getObjAsync(byte[] rawKey, Class<T> returnType) {
+        return shard(rawKey).getObjAsync(rawKey, returnType);
+    }
+
+    @Override
+    public CompletableFuture<Void> setObjAsync(String key, long timeout, Object value) {
+        return shard(key).setObjAsync(key, timeout, value);
+    }
+
+    @Override
+    public CompletableFuture<Void> setObjAsync(String key, long timeout, Object value, RedisSerializer<Object> serializer) {
+        return shard(key).setObjAsync(key, timeout, value, serializer);
+    }
+
+    /**
+     * 各分片的MGET同时发出，再按keys的顺序合并
+     */
+    @Override
+    public CompletableFuture<List<Object>> multiGetAsync(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        Map<RedisService, List<String>> groups = groupByShard(keys);
+        Map<RedisService, CompletableFuture<List<Object>>> futures = new LinkedHashMap<>();
+        for (Map.Entry<RedisService, List<String>> entry : groups.entrySet()) {
+            futures.put(entry.getKey(), entry.getKey().multiGetAsync(entry.getValue()));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Map.Entry<RedisService, List<String>> entry : groups.entrySet()) {
+                List<String> shardKeys = entry.getValue();
+                List<Object> shardValues = futures.get(entry.getKey()).join();
+                for (int i = 0; i < shardKeys.size(); i++) {
+                    values.put(shardKeys.get(i), shardValues.get(i));
+                }
+            }
+            List<Object> result = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                result.add(values.get(key));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> rPushObjAsync(String key, Object value) {
+        return shard(key).rPushObjAsync(key, value);
+    }
+
+    @Override
+    public CompletableFuture<Long> lPushObjAsync(String key, Object value) {
+        return shard(key).lPushObjAsync(key, value);
+    }
+
+    @Override
+    public CompletableFuture<Object> lPopObjAsync(String key) {
+        return shard(key).lPopObjAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<Object> rPopObjAsync(String key) {
+        return shard(key).rPopObjAsync(key);
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> getListAsync(String key) {
+        return shard(key).getListAsync(key);
+    }
+
+    /**
+     * 依次遍历各分片的游标，上一个遍历完才打开下一个
+     */
+    private static class ShardedCursor implements Cursor<String> {
+        private final Iterator<RedisService> shards;
+        private final Function<RedisService, Cursor<String>> open;
+        private Cursor<String> current;
+        private long position;
+        private boolean closed;
+
+        ShardedCursor(List<RedisService> shards, Function<RedisService, Cursor<String>> open) {
+            this.shards = shards.iterator();
+            this.open = open;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!closed && (current == null || !current.hasNext())) {
+                closeCurrent();
+                if (!shards.hasNext()) {
+                    return false;
+                }
+                current = open.apply(shards.next());
+            }
+            return !closed;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            position++;
+            return current.next();
+        }
+
+        private void closeCurrent() {
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    logger.warn("Error closing scan cursor", e);
+                }
+                current = null;
+            }
+        }
+
+        @Override
+        public long getCursorId() {
+            return current == null ? 0L : current.getCursorId();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public Cursor<String> open() {
+            return this;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+            closeCurrent();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.domain.ConcurrentTimeBasedCache;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 两级缓存：先查本地有容量上限的副本，未命中再查redis并放入本地
+ * put/evict/clear写redis后通过InvalidationBus通知其他节点移除本地副本，
+ * 广播丢失时本地副本最多在ttl后过期
+ * 不缓存null
+ */
+public class TwoTierCache extends AbstractValueAdaptingCache {
+    /**
+     * 与RedisCache默认的key前缀一致，广播的key即redis中的完整key
+     */
+    static final String SEPARATOR = "::";
+
+    private final String name;
+    private final Cache remote;
+    private final ConcurrentTimeBasedCache<Object> local;
+    private final InvalidationBus invalidationBus;
+    private final Map<String, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+
+    public TwoTierCache(String name, Cache remote, ConcurrentTimeBasedCache<Object> local, InvalidationBus invalidationBus) {
+        super(false);
+        this.name = name;
+        this.remote = remote;
+        this.local = local;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = localKey(key);
+        Object value = local.get(localKey);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper wrapper = remote.get(key);
+        value = wrapper == null ? null : wrapper.get();
+        if (value != null) {
+            local.put(localKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * sync=true时使用，同一key同时只有一个线程查redis和调用valueLoader，其他线程等待它的结果
+     * valueLoader返回null时不缓存
+     */
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            return (T) value;
+        }
+        String localKey = localKey(key);
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightLoads.putIfAbsent(localKey, load);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+        try {
+            // 上一次加载可能刚刚结束
+            value = lookup(key);
+            if (value == null) {
+                value = load(key, valueLoader);
+            }
+            load.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(localKey, load);
+        }
+    }
+
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        remote.put(key, storeValue);
+        String localKey = localKey(key);
+        local.put(localKey, storeValue);
+        invalidationBus.publishKey(name + SEPARATOR + localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        ValueWrapper existing = remote.putIfAbsent(key, storeValue);
+        String localKey = localKey(key);
+        if (existing == null) {
+            local.put(localKey, storeValue);
+            invalidationBus.publishKey(name + SEPARATOR + localKey);
+        } else if (existing.get() != null) {
+            local.put(localKey, existing.get());
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        String localKey = localKey(key);
+        local.remove(localKey);
+        invalidationBus.publishKey(name + SEPARATOR + localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.clear();
+        invalidationBus.publishNamespace(name);
+    }
+
+    /**
+     * 其他节点修改了该key，只移除本地副本
+     */
+    void evictLocal(String localKey) {
+        local.remove(localKey);
+    }
+
+    void clearLocal() {
+        local.clear();
+    }
+
+    private static String localKey(Object key) {
+        return key.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.domain.ConcurrentTimeBasedCache;
+import com.centaurstech.redis.domain.NearCache;
+import com.centaurstech.redis.interfaces.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在redis缓存（一般为RedisCacheManager）前面加一层本地缓存的CacheManager，每个缓存名有独立的本地ttl和容量上限
+ * 本地容量为0的缓存直接使用redis缓存
+ * 失效通知与CacheService共用同一个redis频道，@CacheEvict会使其他节点的本地副本失效
+ */
+public class TwoTierCacheManager extends AbstractTransactionSupportingCacheManager implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(TwoTierCacheManager.class);
+    public static final long DEFAULT_LOCAL_TTL_MILLIS = 30 * 1000L;
+
+    private final CacheManager remoteCacheManager;
+    private final InvalidationBus invalidationBus;
+    private final Map<String, LocalSpec> localSpecs = new ConcurrentHashMap<>();
+    private final Map<String, TwoTierCache> twoTierCaches = new ConcurrentHashMap<>();
+    private final Set<String> initialCacheNames = new LinkedHashSet<>();
+    private LocalSpec defaultLocalSpec = new LocalSpec(DEFAULT_LOCAL_TTL_MILLIS, NearCache.DEFAULT_MAX_ENTRIES);
+
+    /**
+     * @param remoteCacheManager 第二级缓存，一般为RedisCacheManager，不需要开启transactionAware
+     * @param invalidationBus    失效广播，由本CacheManager启动和关闭
+     */
+    public TwoTierCacheManager(CacheManager remoteCacheManager, InvalidationBus invalidationBus) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * 未单独配置的缓存使用的本地ttl和容量，需要在afterPropertiesSet之前设置
+     *
+     * @param ttlMillis  本地副本的最长存活时间，单位毫秒
+     * @param maxEntries 本地副本的最大条数，0为不使用本地缓存
+     */
+    public void setDefaultLocal(long ttlMillis, int maxEntries) {
+        this.defaultLocalSpec = new LocalSpec(ttlMillis, maxEntries);
+    }
+
+    /**
+     * 单独配置某个缓存的本地ttl和容量，启动时即创建该缓存，需要在afterPropertiesSet之前设置
+     */
+    public void setLocal(String cacheName, long ttlMillis, int maxEntries) {
+        this.localSpecs.put(cacheName, new LocalSpec(ttlMillis, maxEntries));
+        this.initialCacheNames.add(cacheName);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.invalidationBus.addListener(new InvalidationListener() {
+            @Override
+            public void onInvalidateKeys(Collection<String> keys) {
+                for (String key : keys) {
+                    int separator = key.indexOf(TwoTierCache.SEPARATOR);
+                    if (separator < 0) {
+                        continue;
+                    }
+                    TwoTierCache cache = twoTierCaches.get(key.substring(0, separator));
+                    if (cache != null) {
+                        cache.evictLocal(key.substring(separator + TwoTierCache.SEPARATOR.length()));
+                    }
+                }
+            }
+
+            @Override
+            public void onInvalidateNamespace(String namespace) {
+                TwoTierCache cache = twoTierCaches.get(namespace);
+                if (cache != null) {
+                    cache.clearLocal();
+                }
+            }
+        });
+        try {
+            this.invalidationBus.start();
+        } catch (Exception e) {
+            // 订阅失败时本地副本只能依靠ttl过期
+            logger.warn("Failed to subscribe cache invalidation channel: {}", e.getMessage());
+        }
+        super.afterPropertiesSet();
+    }
+
+    @Override
+    public void destroy() {
+        this.invalidationBus.stop();
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>(initialCacheNames.size());
+        for (String name : initialCacheNames) {
+            Cache cache = createCache(name);
+            if (cache != null) {
+                caches.add(cache);
+            }
+        }
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    private Cache createCache(String name) {
+        Cache remote = this.remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        LocalSpec spec = this.localSpecs.getOrDefault(name, this.defaultLocalSpec);
+        if (spec.maxEntries <= 0) {
+            return remote;
+        }
+        TwoTierCache cache = new TwoTierCache(name, remote,
+                new ConcurrentTimeBasedCache<>(spec.ttlMillis, spec.maxEntries), this.invalidationBus);
+        this.twoTierCaches.put(name, cache);
+        return cache;
+    }
+
+    private static class LocalSpec {
+        final long ttlMillis;
+        final int maxEntries;
+
+        LocalSpec(long ttlMillis, int maxEntries) {
+            this.ttlMillis = ttlMillis;
+            this.maxEntries = maxEntries;
+        }
+    }
+}
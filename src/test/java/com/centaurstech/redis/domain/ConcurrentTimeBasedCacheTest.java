@@ -0,0 +1,267 @@
+package com.centaurstech.redis.domain;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentTimeBasedCacheTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    @Test
+    public void putGetRemove() {
+        ConcurrentTimeBasedCache<String> cache = new ConcurrentTimeBasedCache<>(MINUTE, 10);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        assertTrue(cache.contains("a"));
+        cache.put("a", "2");
+        assertEquals("2", cache.get("a"));
+        assertEquals("2", cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertNull(cache.remove("a"));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void putNullRemoves() {
+        ConcurrentTimeBasedCache<String> cache = new ConcurrentTimeBasedCache<>(MINUTE, 10);
+        cache.put("a", "1");
+        cache.put("a", null);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expiredEntriesAreNotReturned() throws InterruptedException {
+        ConcurrentTimeBasedCache<String> cache = new ConcurrentTimeBasedCache<>(MINUTE, 10);
+        cache.put("short", "1", 50L);
+        cache.put("long", "2");
+        assertEquals("1", cache.get("short"));
+        Thread.sleep(80);
+        assertNull(cache.get("short"));
+        assertFalse(cache.contains("short"));
+        assertEquals("2", cache.get("long"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void putIfAbsentKeepsLiveValueAndReplacesExpired() throws InterruptedException {
+        ConcurrentTimeBasedCache<String> cache = new ConcurrentTimeBasedCache<>(MINUTE, 10);
+        assertNull(cache.putIfAbsent("a", "1", 50L));
+        assertEquals("1", cache.putIfAbsent("a", "2", 50L));
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(80);
+        assertNull(cache.putIfAbsent("a", "3", MINUTE));
+        assertEquals("3", cache.get("a"));
+        assertEquals(1, cache.weightedSize());
+    }
+
+    @Test
+    public void cleanUpRemovesExpiredEntries() throws InterruptedException {
+        ConcurrentTimeBasedCache<String> cache = new ConcurrentTimeBasedCache<>(MINUTE, 100);
+        for (int i = 0; i < 50; i++) {
+            cache.put("k" + i, "v", 20L);
+        }
+        cache.put("live", "v");
+        Thread.sleep(50);
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.weightedSize());
+        assertEquals("v", cache.get("live"));
+    }
+
+    @Test
+    public void sizeStaysWithinMaximum() {
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 100);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("k" + i, i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.weightedSize());
+    }
+
+    @Test
+    public void weigherLimitsTotalWeight() {
+        ConcurrentTimeBasedCache<String> cache = new ConcurrentTimeBasedCache<>(MINUTE, 100, (key, value) -> value.length());
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, "0123456789");
+        }
+        cache.cleanUp();
+        assertTrue(cache.weightedSize() <= 100);
+        assertEquals(cache.size() * 10, cache.weightedSize());
+    }
+
+    /**
+     * 窗口溢出的候选者与probation中最久未用的数据频率相同时，淘汰候选者
+     */
+    @Test
+    public void rejectsCandidateNotMoreFrequentThanVictim() {
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 10);
+        for (int i = 0; i <= 10; i++) {
+            cache.put("k" + i, i);
+        }
+        // 窗口只有1条：k10在窗口中，k9被挤入probation后与k0比较频率，落选
+        assertNull(cache.get("k9"));
+        for (int i = 0; i <= 8; i++) {
+            assertEquals(Integer.valueOf(i), cache.get("k" + i));
+        }
+        assertEquals(Integer.valueOf(10), cache.get("k10"));
+    }
+
+    /**
+     * 候选者访问频率更高时，淘汰probation中最久未用的数据
+     */
+    @Test
+    public void evictsLeastRecentlyUsedWhenCandidateIsMoreFrequent() {
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 10);
+        for (int i = 0; i <= 9; i++) {
+            cache.put("k" + i, i);
+        }
+        cache.put("hot", -1);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(-1), cache.get("hot"));
+        }
+        // hot被挤出窗口时频率高于probation队首的k0
+        cache.put("next", -2);
+        assertNull(cache.get("k0"));
+        assertNull(cache.get("k9"));
+        for (int i = 1; i <= 8; i++) {
+            assertEquals(Integer.valueOf(i), cache.get("k" + i));
+        }
+        assertEquals(Integer.valueOf(-1), cache.get("hot"));
+        assertEquals(Integer.valueOf(-2), cache.get("next"));
+        assertEquals(10, cache.size());
+    }
+
+    /**
+     * 大量只访问一次的数据不会冲掉经常访问的数据（纯LRU下会全部被冲掉）
+     */
+    @Test
+    public void frequentKeysSurviveScan() {
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 100);
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot" + i, i);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get("hot" + i);
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            cache.put("scan" + i, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), cache.get("hot" + i));
+        }
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void removeByPrefixAndClear() {
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 100);
+        for (int i = 0; i < 10; i++) {
+            cache.put("a:" + i, i);
+            cache.put("b:" + i, i);
+        }
+        assertEquals(10, cache.removeByPrefix("a:"));
+        assertNull(cache.get("a:1"));
+        assertEquals(Integer.valueOf(1), cache.get("b:1"));
+        assertEquals(10, cache.weightedSize());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void concurrentPutGetRemoveKeepsAccountingConsistent() throws Exception {
+        int threads = 16;
+        int keys = 5000;
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < 50000; i++) {
+                    int key = random.nextInt(keys);
+                    int op = random.nextInt(10);
+                    if (op < 6) {
+                        Integer value = cache.get("k" + key);
+                        if (value != null) {
+                            assertEquals(key, value.intValue());
+                        }
+                    } else if (op < 9) {
+                        cache.put("k" + key, key);
+                    } else {
+                        cache.remove("k" + key);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        cache.cleanUp();
+        assertTrue(cache.size() <= 1000);
+        assertEquals(cache.size(), cache.weightedSize());
+    }
+
+    @Test
+    public void concurrentPutIfAbsentHasSingleWinner() throws Exception {
+        int threads = 16;
+        ConcurrentTimeBasedCache<Integer> cache = new ConcurrentTimeBasedCache<>(MINUTE, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int round = 0; round < 100; round++) {
+            String key = "k" + round;
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger winners = new AtomicInteger();
+            Map<Integer, Integer> seen = new ConcurrentHashMap<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int value = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    Integer existing = cache.putIfAbsent(key, value, MINUTE);
+                    if (existing == null) {
+                        winners.incrementAndGet();
+                    } else {
+                        seen.put(existing, existing);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(1, winners.get());
+            assertTrue(seen.size() <= 1);
+        }
+        executor.shutdown();
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.weightedSize());
+    }
+}
@@ -0,0 +1,93 @@
+package com.centaurstech.redis.domain;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+
+    private static ConsistentHashRing<String> ring(int nodes) {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+        for (int i = 0; i < nodes; i++) {
+            ring.add("10.0.0." + i + ":6379", "node" + i);
+        }
+        return ring;
+    }
+
+    /**
+     * 增加第N个节点时约1/N的key移动，且只移动到新节点
+     */
+    @Test
+    public void addingNodeMovesAboutOneNthOfKeys() {
+        ConsistentHashRing<String> ring = ring(4);
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            before.put("user:" + i, ring.get("user:" + i));
+        }
+        ring.add("10.0.0.4:6379", "node4");
+        int moved = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String owner = ring.get(entry.getKey());
+            if (!owner.equals(entry.getValue())) {
+                assertEquals("node4", owner);
+                moved++;
+            }
+        }
+        double ratio = moved / (double) before.size();
+        assertTrue("moved " + ratio, ratio > 0.14 && ratio < 0.26);
+    }
+
+    @Test
+    public void removingNodeMovesOnlyItsKeys() {
+        ConsistentHashRing<String> ring = ring(5);
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            before.put("user:" + i, ring.get("user:" + i));
+        }
+        assertEquals("node2", ring.remove("10.0.0.2:6379"));
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            if (!entry.getValue().equals("node2")) {
+                assertEquals(entry.getValue(), ring.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void hashTagRoutesByTagOnly() {
+        byte[] tag = "user:42".getBytes(StandardCharsets.UTF_8);
+        int tagHash = ConsistentHashRing.murmur3(tag, 0, tag.length);
+        assertEquals(tagHash, ConsistentHashRing.hash("{user:42}:profile".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(tagHash, ConsistentHashRing.hash("queue:{user:42}".getBytes(StandardCharsets.UTF_8)));
+        // 空的{}不是hash tag，按整个key计算
+        byte[] empty = "{}:a".getBytes(StandardCharsets.UTF_8);
+        assertEquals(ConsistentHashRing.murmur3(empty, 0, empty.length), ConsistentHashRing.hash(empty));
+
+        ConsistentHashRing<String> ring = ring(5);
+        String owner = ring.get("{user:42}:profile");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(owner, ring.get("{user:42}:field" + i));
+        }
+    }
+
+    /**
+     * MurmurHash3 x86_32（seed 0）的公开测试向量，覆盖1~3字节的尾部
+     */
+    @Test
+    public void murmur3MatchesReferenceVectors() {
+        assertEquals(0, murmur3(""));
+        assertEquals(0x3c2569b2, murmur3("a"));
+        assertEquals(0xb3dd93fa, murmur3("abc"));
+        assertEquals(0x43ed676a, murmur3("abcd"));
+        assertEquals(0x2e4ff723, murmur3("The quick brown fox jumps over the lazy dog"));
+    }
+
+    private static int murmur3(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ConsistentHashRing.murmur3(bytes, 0, bytes.length);
+    }
+}
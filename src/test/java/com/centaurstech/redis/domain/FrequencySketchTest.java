@@ -0,0 +1,58 @@
+package com.centaurstech.redis.domain;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void incrementRaisesFrequency() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency("a"));
+        for (int i = 1; i <= 5; i++) {
+            sketch.increment("a");
+            assertEquals(i, sketch.frequency("a"));
+        }
+    }
+
+    @Test
+    public void frequencyIsCappedAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    public void resetHalvesCounters() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("a");
+        }
+        int i = 0;
+        while (sketch.frequency("a") == 15 && i < 100000) {
+            sketch.increment("k" + i++);
+        }
+        // 累计增量达到sampleSize（10倍容量）时全部减半
+        assertEquals(7, sketch.frequency("a"));
+        assertTrue(i >= 10 * 1024 - 15);
+    }
+
+    @Test
+    public void distinctKeysRarelyCollide() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment("hot");
+        }
+        int collided = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (sketch.frequency("cold" + i) > 0) {
+                collided++;
+            }
+        }
+        assertTrue("collided " + collided, collided < 10);
+    }
+}
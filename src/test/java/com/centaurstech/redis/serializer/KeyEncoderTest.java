@@ -0,0 +1,78 @@
+package com.centaurstech.redis.serializer;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * KeyEncoder的结果必须与StringRedisSerializer逐字节相同，否则通过String路径写入的已有key将无法读到
+ */
+public class KeyEncoderTest {
+
+    private static final String[] KEYS = {
+            "",
+            "user:12345",
+            "机器人配置:北京",
+            "café-über",
+            "emoji-😀-end",
+            "😀",
+            "lone-high-\ud83d",
+            "lone-high-\ud83d-x",
+            "\ude00-lone-low",
+            "reversed-\ude00\ud83d",
+            "\uffff\u0800\u07ff\u0080\u007f",
+    };
+
+    private final KeyEncoder encoder = new KeyEncoder();
+    private final StringRedisSerializer serializer = new StringRedisSerializer();
+
+    @Test
+    public void matchesStringSerializer() {
+        for (String key : KEYS) {
+            assertSame("bot", key);
+            assertSame("命名空间", key);
+        }
+    }
+
+    @Test
+    public void matchesStringSerializerWithGeneration() {
+        for (String key : KEYS) {
+            for (long generation : new long[]{0L, 1L, 42L, Long.MAX_VALUE}) {
+                String expected = "bot:g" + generation + ":" + key;
+                assertArrayEquals(expected, expected.getBytes(StandardCharsets.UTF_8), encoder.encode("bot", generation, key));
+            }
+        }
+        // 代数变化后不能沿用缓存的旧前缀
+        assertArrayEquals("bot:g2:k".getBytes(StandardCharsets.UTF_8), encoder.encode("bot", 2L, "k"));
+        assertArrayEquals("bot:g3:k".getBytes(StandardCharsets.UTF_8), encoder.encode("bot", 3L, "k"));
+    }
+
+    @Test
+    public void matchesStringSerializerForLongAndRandomKeys() {
+        StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longKey.append("键😀");
+        }
+        assertSame("bot", longKey.toString());
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(20)];
+            for (int j = 0; j < chars.length; j++) {
+                // 偏向代理字符区间，覆盖成对和不成对的情况
+                chars[j] = random.nextBoolean() ? (char) (0xd800 + random.nextInt(0x800)) : (char) random.nextInt(0x10000);
+            }
+            assertSame("bot", new String(chars));
+        }
+    }
+
+    private void assertSame(String namespace, String key) {
+        String full = namespace + ":" + key;
+        byte[] expected = serializer.serialize(full);
+        assertArrayEquals(full, full.getBytes(StandardCharsets.UTF_8), expected);
+        assertArrayEquals(full, expected, encoder.encode(namespace, key));
+    }
+}
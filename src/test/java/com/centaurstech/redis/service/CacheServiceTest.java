@@ -0,0 +1,118 @@
+package com.centaurstech.redis.service;
+
+import com.centaurstech.redis.domain.CircuitState;
+import com.centaurstech.redis.interfaces.RedisKey;
+import io.lettuce.core.RedisCommandExecutionException;
+import org.junit.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CacheServiceTest {
+
+    private enum Key implements RedisKey {
+        TEST;
+
+        @Override
+        public String getKey() {
+            return "test";
+        }
+    }
+
+    /**
+     * 不连接redis，按available决定调用成功还是连接失败
+     */
+    private static class StubRedisService extends RedisService {
+        volatile boolean available;
+        volatile RuntimeException startupError;
+        final AtomicInteger pings = new AtomicInteger();
+
+        StubRedisService(boolean available) {
+            super(new RedisTemplate<>());
+            this.available = available;
+        }
+
+        private void check() {
+            if (!available) {
+                throw new RedisConnectionFailureException("connection refused");
+            }
+        }
+
+        @Override
+        public String ping() {
+            pings.incrementAndGet();
+            check();
+            return "PONG";
+        }
+
+        @Override
+        public void setObj(String key, long timeout, Object value) {
+            if (startupError != null) {
+                throw startupError;
+            }
+            check();
+        }
+
+        @Override
+        public Object getObj(String key) {
+            check();
+            return null;
+        }
+    }
+
+    @Test
+    public void memoryDataSurvivesProbeCycles() throws InterruptedException {
+        StubRedisService redisService = new StubRedisService(false);
+        CacheService cacheService = new CacheService(redisService);
+        try {
+            assertEquals(CircuitState.OPEN, cacheService.getCircuitState());
+            cacheService.setObj(Key.TEST, "a", "v", 60000L);
+            // 每次探测都会经过OPEN -> HALF_OPEN -> OPEN
+            while (redisService.pings.get() < 3) {
+                Thread.sleep(100);
+            }
+            Thread.sleep(100);
+            assertEquals(CircuitState.OPEN, cacheService.getCircuitState());
+            assertEquals("v", cacheService.getObj(Key.TEST, "a"));
+        } finally {
+            cacheService.destroy();
+        }
+    }
+
+    @Test
+    public void memoryDataIsDroppedWhenRedisRecovers() throws InterruptedException {
+        StubRedisService redisService = new StubRedisService(false);
+        CacheService cacheService = new CacheService(redisService);
+        try {
+            cacheService.setObj(Key.TEST, "a", "v", 60000L);
+            redisService.available = true;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cacheService.getCircuitState() != CircuitState.CLOSED && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertEquals(CircuitState.CLOSED, cacheService.getCircuitState());
+            cacheService.getCircuitBreaker().trip();
+            assertNull(cacheService.getObj(Key.TEST, "a"));
+        } finally {
+            cacheService.destroy();
+        }
+    }
+
+    @Test
+    public void commandErrorAtStartupDoesNotOpenCircuit() {
+        StubRedisService redisService = new StubRedisService(true);
+        redisService.startupError = new RedisSystemException("Error in execution",
+                new RedisCommandExecutionException("READONLY You can't write against a read only replica."));
+        CacheService cacheService = new CacheService(redisService);
+        try {
+            assertEquals(CircuitState.CLOSED, cacheService.getCircuitState());
+        } finally {
+            cacheService.destroy();
+        }
+    }
+}